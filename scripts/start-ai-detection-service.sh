@@ -11,7 +11,7 @@ export PATH=$JAVA_HOME/bin:$PATH
 # 设置服务配置
 SERVICE_NAME="ai-detection-service"
 SERVICE_PORT=8005
-JAR_FILE="spring-cloud-services/ai-detection-service/target/ai-detection-service-1.0.0.jar"
+JAR_FILE="spring-cloud-services/ai-detection-service/target/ai-detection-service-1.0.0-exec.jar"
 
 # 检查Java环境
 if ! command -v java &> /dev/null; then
@@ -0,0 +1,126 @@
+package com.smartflow.ai.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 对比两次JMH运行结果（-rf json 输出），发现耗时或单次分配量的回退
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.smartflow.ai.benchmark.BaselineComparison \
+ *     baseline/jmh-baseline.json target/jmh-result.json [阈值百分比，默认10]
+ * </pre>
+ *
+ * 存在回退时以状态码1退出
+ */
+public final class BaselineComparison {
+
+    private static final String ALLOC_METRIC = "gc.alloc.rate.norm";
+
+    /**
+     * 分配量很小时百分比波动没有意义，变化不超过该字节数不算回退
+     */
+    private static final double ALLOC_TOLERANCE_BYTES = 16;
+
+    private BaselineComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("用法: BaselineComparison <基线结果.json> <本次结果.json> [阈值百分比]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+        Map<String, Result> baseline = read(new File(args[0]));
+        Map<String, Result> current = read(new File(args[1]));
+
+        int regressions = 0;
+        System.out.printf("%-70s %14s %14s %8s %12s %12s %8s%n",
+                "benchmark", "base", "current", "diff", "base B/op", "cur B/op", "diff");
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result now = entry.getValue();
+            Result base = baseline.get(entry.getKey());
+            if (base == null) {
+                System.out.printf("%-70s %14s %14.3f %8s%n", entry.getKey(), "-", now.score, "new");
+                continue;
+            }
+            double scoreDiff = percent(base.score, now.score);
+            double allocDiff = percent(base.alloc, now.alloc);
+            // 吞吐量模式越大越好，其余模式越小越好
+            boolean slower = now.higherIsBetter ? -scoreDiff > threshold : scoreDiff > threshold;
+            boolean moreGarbage = allocDiff > threshold && now.alloc - base.alloc > ALLOC_TOLERANCE_BYTES;
+            String mark = slower || moreGarbage ? "  <-- 回退" : "";
+            if (slower || moreGarbage) {
+                regressions++;
+            }
+            System.out.printf("%-70s %14.3f %14.3f %+7.1f%% %12.1f %12.1f %+7.1f%%%s%n", entry.getKey(),
+                    base.score, now.score, scoreDiff, base.alloc, now.alloc, allocDiff, mark);
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.printf("%-70s %14s%n", key, "missing");
+            }
+        }
+
+        if (regressions > 0) {
+            System.out.printf("%d 项超过 %.1f%% 阈值%n", regressions, threshold);
+            System.exit(1);
+        }
+        System.out.printf("没有超过 %.1f%% 阈值的回退%n", threshold);
+    }
+
+    private static Map<String, Result> read(File file) throws IOException {
+        JsonNode root = new ObjectMapper().readTree(file);
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (JsonNode run : root) {
+            Result result = new Result();
+            result.score = run.path("primaryMetric").path("score").asDouble();
+            result.higherIsBetter = "thrpt".equals(run.path("mode").asText());
+            result.alloc = allocation(run.path("secondaryMetrics"));
+            results.put(key(run), result);
+        }
+        return results;
+    }
+
+    /**
+     * 旧版本JMH的指标名带 "·" 前缀
+     */
+    private static double allocation(JsonNode secondaryMetrics) {
+        Iterator<Map.Entry<String, JsonNode>> fields = secondaryMetrics.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (field.getKey().endsWith(ALLOC_METRIC)) {
+                return field.getValue().path("score").asDouble();
+            }
+        }
+        return 0.0;
+    }
+
+    private static String key(JsonNode run) {
+        String name = run.path("benchmark").asText().replace("com.smartflow.ai.benchmark.", "");
+        StringBuilder key = new StringBuilder(name);
+        Iterator<Map.Entry<String, JsonNode>> params = run.path("params").fields();
+        while (params.hasNext()) {
+            Map.Entry<String, JsonNode> param = params.next();
+            key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+        }
+        return key.toString();
+    }
+
+    private static double percent(double base, double now) {
+        return base == 0.0 ? 0.0 : (now - base) * 100.0 / base;
+    }
+
+    private static final class Result {
+
+        private double score;
+        private double alloc;
+        private boolean higherIsBetter;
+    }
+}
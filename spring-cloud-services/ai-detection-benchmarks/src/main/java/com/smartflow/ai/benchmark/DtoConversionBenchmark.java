@@ -0,0 +1,123 @@
+package com.smartflow.ai.benchmark;
+
+import com.smartflow.ai.dto.AccidentDetectionDTO;
+import com.smartflow.ai.dto.TrafficDataDTO;
+import com.smartflow.ai.entity.AccidentDetection;
+import com.smartflow.ai.entity.TrafficData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.beans.BeanUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 实体到DTO的转换，查询接口、缓存回填和导出的每一行都要经过
+ * beanUtils* 为原先基于反射的 BeanUtils.copyProperties 实现，作为对比基线；
+ * *List 转换 10 万行，结果按单行平均
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DtoConversionBenchmark {
+
+    private static final int MASK = Fixtures.SAMPLE_COUNT - 1;
+    private static final int LIST_ROWS = 100_000;
+
+    private TrafficData[] trafficRows;
+    private AccidentDetection[] accidentRows;
+    private TrafficData[] trafficList;
+    private AccidentDetection[] accidentList;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        trafficRows = Fixtures.trafficEntities();
+        accidentRows = Fixtures.accidentEntities();
+        trafficList = Fixtures.trafficEntities(LIST_ROWS);
+        accidentList = Fixtures.accidentEntities(LIST_ROWS);
+    }
+
+    @Benchmark
+    public TrafficDataDTO trafficData() {
+        return Fixtures.TRAFFIC_DATA_MAPPER.toDto(trafficRows[next++ & MASK]);
+    }
+
+    @Benchmark
+    public TrafficDataDTO beanUtilsTrafficData() {
+        return beanUtilsToDto(trafficRows[next++ & MASK]);
+    }
+
+    @Benchmark
+    public AccidentDetectionDTO accidentDetection() {
+        return Fixtures.ACCIDENT_DETECTION_MAPPER.toDto(accidentRows[next++ & MASK]);
+    }
+
+    @Benchmark
+    public AccidentDetectionDTO beanUtilsAccidentDetection() {
+        return beanUtilsToDto(accidentRows[next++ & MASK]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LIST_ROWS)
+    public void trafficDataList(Blackhole blackhole) {
+        for (TrafficData row : trafficList) {
+            blackhole.consume(Fixtures.TRAFFIC_DATA_MAPPER.toDto(row));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LIST_ROWS)
+    public void beanUtilsTrafficDataList(Blackhole blackhole) {
+        for (TrafficData row : trafficList) {
+            blackhole.consume(beanUtilsToDto(row));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LIST_ROWS)
+    public void accidentDetectionList(Blackhole blackhole) {
+        for (AccidentDetection row : accidentList) {
+            blackhole.consume(Fixtures.ACCIDENT_DETECTION_MAPPER.toDto(row));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LIST_ROWS)
+    public void beanUtilsAccidentDetectionList(Blackhole blackhole) {
+        for (AccidentDetection row : accidentList) {
+            blackhole.consume(beanUtilsToDto(row));
+        }
+    }
+
+    static TrafficDataDTO beanUtilsToDto(TrafficData trafficData) {
+        TrafficDataDTO dto = new TrafficDataDTO();
+        BeanUtils.copyProperties(trafficData, dto);
+        return dto;
+    }
+
+    static AccidentDetectionDTO beanUtilsToDto(AccidentDetection accidentDetection) {
+        AccidentDetectionDTO dto = new AccidentDetectionDTO();
+        BeanUtils.copyProperties(accidentDetection, dto);
+        if (accidentDetection.getSeverity() != null) {
+            dto.setSeverity(accidentDetection.getSeverity().name());
+        }
+        if (accidentDetection.getStatus() != null) {
+            dto.setStatus(accidentDetection.getStatus().name());
+        }
+        return dto;
+    }
+}
@@ -0,0 +1,185 @@
+package com.smartflow.ai.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.smartflow.ai.dto.AccidentDetectionDTO;
+import com.smartflow.ai.dto.TrafficDataDTO;
+import com.smartflow.ai.entity.AccidentDetection;
+import com.smartflow.ai.entity.TrafficData;
+import com.smartflow.ai.mapper.AccidentDetectionMapper;
+import com.smartflow.ai.mapper.TrafficDataMapper;
+import com.smartflow.ai.model.TrafficFrame;
+import org.mapstruct.factory.Mappers;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+/**
+ * 基准测试的样本数据
+ * 固定随机种子，保证不同提交之间的测试输入一致
+ */
+final class Fixtures {
+
+    static final int SAMPLE_COUNT = 1024;
+
+    static final TrafficDataMapper TRAFFIC_DATA_MAPPER = Mappers.getMapper(TrafficDataMapper.class);
+    static final AccidentDetectionMapper ACCIDENT_DETECTION_MAPPER = Mappers.getMapper(AccidentDetectionMapper.class);
+
+    private static final long SEED = 20240601L;
+
+    private Fixtures() {
+    }
+
+    /**
+     * 与 Spring Boot 默认配置一致的 ObjectMapper：支持 java.time，日期按ISO字符串输出
+     */
+    static ObjectMapper objectMapper() {
+        return new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    /**
+     * 按检测任务的取值范围生成各类数量和速度，每行依次为
+     * person/car/bicycle/bus/motorcycle/truck 的数量和速度
+     */
+    static double[][] frameValues() {
+        Random random = new Random(SEED);
+        double[][] values = new double[SAMPLE_COUNT][];
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            values[i] = new double[]{
+                    random.nextInt(10), random.nextDouble() * 5,
+                    random.nextInt(50), random.nextDouble() * 30 + 20,
+                    random.nextInt(15), random.nextDouble() * 15 + 10,
+                    random.nextInt(5), random.nextDouble() * 20 + 15,
+                    random.nextInt(20), random.nextDouble() * 25 + 15,
+                    random.nextInt(8), random.nextDouble() * 25 + 15
+            };
+        }
+        return values;
+    }
+
+    /**
+     * 按 AiDetectionServiceImpl.generateMockTrafficData 的方式填充一帧结果
+     */
+    static void fill(TrafficFrame frame, Long cameraId, long timestampMillis, double[] v) {
+        frame.reset(cameraId, timestampMillis);
+        frame.set(TrafficFrame.PERSON, (int) v[0], v[1]);
+        frame.set(TrafficFrame.CAR, (int) v[2], v[3]);
+        frame.set(TrafficFrame.BICYCLE, (int) v[4], v[5]);
+        frame.set(TrafficFrame.BUS, (int) v[6], v[7]);
+        frame.set(TrafficFrame.MOTORCYCLE, (int) v[8], v[9]);
+        frame.set(TrafficFrame.TRUCK, (int) v[10], v[11]);
+        frame.computeTotals();
+    }
+
+    static TrafficFrame[] frames() {
+        double[][] values = frameValues();
+        long now = System.currentTimeMillis();
+        TrafficFrame[] frames = new TrafficFrame[SAMPLE_COUNT];
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            frames[i] = new TrafficFrame();
+            fill(frames[i], (long) (i % 64 + 1), now + i * 40L, values[i]);
+        }
+        return frames;
+    }
+
+    static TrafficData[] trafficEntities() {
+        return trafficEntities(SAMPLE_COUNT);
+    }
+
+    static TrafficData[] trafficEntities(int count) {
+        Random random = new Random(SEED);
+        LocalDateTime start = LocalDateTime.of(2024, 6, 1, 8, 0);
+        TrafficData[] rows = new TrafficData[count];
+        for (int i = 0; i < count; i++) {
+            TrafficData row = new TrafficData();
+            row.setId((long) i + 1);
+            row.setDateTime(start.plusSeconds(i));
+            row.setPedestrianCount(random.nextInt(10));
+            row.setCarCount(random.nextInt(50));
+            row.setBicycleCount(random.nextInt(15));
+            row.setBusCount(random.nextInt(5));
+            row.setMotorcycleCount(random.nextInt(20));
+            row.setTruckCount(random.nextInt(8));
+            row.setPedestrianSpeed(hundredths(random.nextDouble() * 5));
+            row.setCarSpeed(hundredths(random.nextDouble() * 30 + 20));
+            row.setBicycleSpeed(hundredths(random.nextDouble() * 15 + 10));
+            row.setBusSpeed(hundredths(random.nextDouble() * 20 + 15));
+            row.setMotorcycleSpeed(hundredths(random.nextDouble() * 25 + 15));
+            row.setTruckSpeed(hundredths(random.nextDouble() * 25 + 15));
+            row.setVolume(hundredths(random.nextDouble() * 300));
+            row.setCongestionLevel(random.nextInt(3));
+            row.setCreatedAt(row.getDateTime());
+            row.setUpdatedAt(row.getDateTime());
+            rows[i] = row;
+        }
+        return rows;
+    }
+
+    static TrafficDataDTO[] trafficDtos() {
+        TrafficData[] rows = trafficEntities();
+        TrafficDataDTO[] dtos = new TrafficDataDTO[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            dtos[i] = TRAFFIC_DATA_MAPPER.toDto(rows[i]);
+            dtos[i].setCameraId((long) (i % 64 + 1));
+        }
+        return dtos;
+    }
+
+    static AccidentDetection[] accidentEntities() {
+        return accidentEntities(SAMPLE_COUNT);
+    }
+
+    static AccidentDetection[] accidentEntities(int count) {
+        Random random = new Random(SEED);
+        LocalDateTime start = LocalDateTime.of(2024, 6, 1, 8, 0);
+        AccidentDetection.Severity[] severities = AccidentDetection.Severity.values();
+        AccidentDetection[] rows = new AccidentDetection[count];
+        for (int i = 0; i < count; i++) {
+            AccidentDetection row = new AccidentDetection();
+            row.setId((long) i + 1);
+            row.setDateTime(start.plusMinutes(i));
+            row.setImageRef("frames/2024/06/01/" + Long.toHexString(random.nextLong()) + ".jpg");
+            row.setInvolvedVehicles(random.nextBoolean() ? "car_car" : "car_bike");
+            row.setConfidenceScore(hundredths(0.85 + random.nextDouble() * 0.14));
+            row.setSeverity(severities[random.nextInt(severities.length)]);
+            row.setStatus(AccidentDetection.Status.PENDING);
+            row.setLocation("Main Intersection");
+            row.setDescription("Vehicle collision detected");
+            row.setCreatedAt(row.getDateTime());
+            row.setUpdatedAt(row.getDateTime());
+            rows[i] = row;
+        }
+        return rows;
+    }
+
+    static AccidentDetectionDTO[] accidentDtos() {
+        AccidentDetection[] rows = accidentEntities();
+        AccidentDetectionDTO[] dtos = new AccidentDetectionDTO[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            dtos[i] = ACCIDENT_DETECTION_MAPPER.toDto(rows[i]);
+        }
+        return dtos;
+    }
+
+    /**
+     * 设置被测组件中由 @Value 注入的字段
+     */
+    static void setField(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        if (field == null) {
+            throw new IllegalArgumentException(target.getClass().getSimpleName() + " 没有字段 " + name);
+        }
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+
+    private static BigDecimal hundredths(double value) {
+        return BigDecimal.valueOf(Math.round(value * 100), 2);
+    }
+}
@@ -0,0 +1,114 @@
+package com.smartflow.ai.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartflow.ai.dto.AccidentDetectionDTO;
+import com.smartflow.ai.dto.TrafficDataDTO;
+import com.smartflow.ai.messaging.RecordCodec;
+import com.smartflow.ai.model.TrafficFrame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kafka消息的序列化：RecordCodec 二进制格式与 json-topics 回退使用的JSON格式对比
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RecordEncodingBenchmark {
+
+    private static final int MASK = Fixtures.SAMPLE_COUNT - 1;
+
+    private ObjectMapper objectMapper;
+    private TrafficFrame[] frames;
+    private TrafficDataDTO[] trafficDtos;
+    private AccidentDetectionDTO[] accidentDtos;
+    private byte[][] trafficBinary;
+    private byte[][] trafficJson;
+    private byte[][] accidentBinary;
+    private byte[][] accidentJson;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        objectMapper = Fixtures.objectMapper();
+        frames = Fixtures.frames();
+        trafficDtos = Fixtures.trafficDtos();
+        accidentDtos = Fixtures.accidentDtos();
+        trafficBinary = new byte[Fixtures.SAMPLE_COUNT][];
+        trafficJson = new byte[Fixtures.SAMPLE_COUNT][];
+        accidentBinary = new byte[Fixtures.SAMPLE_COUNT][];
+        accidentJson = new byte[Fixtures.SAMPLE_COUNT][];
+        for (int i = 0; i < Fixtures.SAMPLE_COUNT; i++) {
+            trafficBinary[i] = RecordCodec.encode(trafficDtos[i]);
+            trafficJson[i] = objectMapper.writeValueAsBytes(trafficDtos[i]);
+            accidentBinary[i] = RecordCodec.encode(accidentDtos[i]);
+            accidentJson[i] = objectMapper.writeValueAsBytes(accidentDtos[i]);
+        }
+    }
+
+    @Benchmark
+    public byte[] frameBinary() {
+        return RecordCodec.encode(frames[next++ & MASK]);
+    }
+
+    @Benchmark
+    public byte[] frameJson() throws IOException {
+        return objectMapper.writeValueAsBytes(frames[next++ & MASK]);
+    }
+
+    @Benchmark
+    public byte[] trafficSampleBinary() {
+        return RecordCodec.encode(trafficDtos[next++ & MASK]);
+    }
+
+    @Benchmark
+    public byte[] trafficSampleJson() throws IOException {
+        return objectMapper.writeValueAsBytes(trafficDtos[next++ & MASK]);
+    }
+
+    @Benchmark
+    public TrafficDataDTO decodeTrafficSampleBinary() {
+        return RecordCodec.decodeTrafficSample(RecordCodec.TRAFFIC_SAMPLE_V1, trafficBinary[next++ & MASK]);
+    }
+
+    @Benchmark
+    public TrafficDataDTO decodeTrafficSampleJson() throws IOException {
+        return objectMapper.readValue(trafficJson[next++ & MASK], TrafficDataDTO.class);
+    }
+
+    @Benchmark
+    public byte[] accidentNotificationBinary() {
+        return RecordCodec.encode(accidentDtos[next++ & MASK]);
+    }
+
+    @Benchmark
+    public byte[] accidentNotificationJson() throws IOException {
+        return objectMapper.writeValueAsBytes(accidentDtos[next++ & MASK]);
+    }
+
+    @Benchmark
+    public AccidentDetectionDTO decodeAccidentNotificationBinary() {
+        return RecordCodec.decodeAccidentNotification(RecordCodec.ACCIDENT_NOTIFICATION_V2,
+                accidentBinary[next++ & MASK]);
+    }
+
+    @Benchmark
+    public AccidentDetectionDTO decodeAccidentNotificationJson() throws IOException {
+        return objectMapper.readValue(accidentJson[next++ & MASK], AccidentDetectionDTO.class);
+    }
+}
@@ -0,0 +1,104 @@
+package com.smartflow.ai.benchmark;
+
+import com.smartflow.ai.dto.TrafficInfoDto;
+import com.smartflow.ai.model.TrafficFrame;
+import com.smartflow.ai.service.LiveTrafficState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 逐帧检测结果路径：填充复用的 TrafficFrame、更新实时交通状态、
+ * 为批量写入器复制，以及旧接口使用的DTO转换
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TrafficFrameBenchmark {
+
+    @Param({"1", "64"})
+    private int cameras;
+
+    private double[][] values;
+    private TrafficFrame frame;
+    private LiveTrafficState liveTrafficState;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        values = Fixtures.frameValues();
+        frame = new TrafficFrame();
+        liveTrafficState = new LiveTrafficState();
+        Fixtures.setField(liveTrafficState, "windowSize", 30);
+        Fixtures.setField(liveTrafficState, "staleMs", 300000L);
+        // 先填满所有摄像头的窗口，测量的是稳定状态下的更新
+        for (int i = 0; i < 30 * cameras; i++) {
+            fillNext();
+            liveTrafficState.update(frame.getCameraId(), frame);
+        }
+    }
+
+    /**
+     * 填充一帧结果（reset、逐类 set、computeTotals）
+     */
+    @Benchmark
+    public TrafficFrame fill() {
+        fillNext();
+        return frame;
+    }
+
+    /**
+     * 填充并更新摄像头的滑动窗口，对应 processFrame 中内存部分的开销
+     */
+    @Benchmark
+    public TrafficFrame fillAndUpdateLiveState() {
+        fillNext();
+        liveTrafficState.update(frame.getCameraId(), frame);
+        return frame;
+    }
+
+    /**
+     * 交给批量写入队列的副本
+     */
+    @Benchmark
+    public TrafficFrame copyForBatchWriter() {
+        fillNext();
+        return frame.copy();
+    }
+
+    /**
+     * 旧接口 processFrame(Long, byte[]) 返回的DTO
+     */
+    @Benchmark
+    public TrafficInfoDto toDto() {
+        fillNext();
+        return frame.toDto();
+    }
+
+    /**
+     * 单个摄像头的滑动窗口查询
+     */
+    @Benchmark
+    public TrafficInfoDto snapshot() {
+        return liveTrafficState.snapshot((long) (next++ % cameras + 1));
+    }
+
+    private void fillNext() {
+        int i = next++ & (Fixtures.SAMPLE_COUNT - 1);
+        Fixtures.fill(frame, (long) (i % cameras + 1), System.currentTimeMillis(), values[i]);
+    }
+}
@@ -5,14 +5,16 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.netflix.eureka.EnableEurekaClient;
 import org.springframework.cloud.openfeign.EnableFeignClients;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * AI检测服务启动类
  */
-@SpringBootApplication
+@SpringBootApplication(scanBasePackages = {"com.smartflow.ai", "com.smartflow.traffic.ai.client"})
 @EnableEurekaClient
-@EnableFeignClients
+@EnableFeignClients(basePackages = "com.smartflow.traffic.ai.client")
 @EnableAsync
+@EnableScheduling
 public class AiDetectionServiceApplication {
     
     public static void main(String[] args) {
@@ -0,0 +1,90 @@
+package com.smartflow.ai.archive;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 列式归档文件中的列，顺序即文件中的列序号，只能在末尾追加
+ * 所有值都存为整数：时间为秒级时间戳，速度和流量按数据库精度（两位小数）存为定点整数；空值由文件中的空值位图记录
+ */
+public enum ArchiveColumn {
+
+    ID("id", "id", 0, true),
+    DATE_TIME("dateTime", "date_time", 0, true),
+    PEDESTRIAN_COUNT("pedestrianCount", "pedestrian_count", 0, false),
+    CAR_COUNT("carCount", "car_count", 0, false),
+    BICYCLE_COUNT("bicycleCount", "bicycle_count", 0, false),
+    BUS_COUNT("busCount", "bus_count", 0, false),
+    MOTORCYCLE_COUNT("motorcycleCount", "motorcycle_count", 0, false),
+    TRUCK_COUNT("truckCount", "truck_count", 0, false),
+    PEDESTRIAN_SPEED("pedestrianSpeed", "pedestrian_speed", 2, false),
+    CAR_SPEED("carSpeed", "car_speed", 2, false),
+    BICYCLE_SPEED("bicycleSpeed", "bicycle_speed", 2, false),
+    BUS_SPEED("busSpeed", "bus_speed", 2, false),
+    MOTORCYCLE_SPEED("motorcycleSpeed", "motorcycle_speed", 2, false),
+    TRUCK_SPEED("truckSpeed", "truck_speed", 2, false),
+    VOLUME("volume", "volume", 2, false),
+    CONGESTION_LEVEL("congestionLevel", "congestion_level", 0, false),
+    CREATED_AT("createdAt", "created_at", 0, true),
+    UPDATED_AT("updatedAt", "updated_at", 0, true);
+
+    static final ArchiveColumn[] COLUMNS = values();
+
+    private final String field;
+    private final String sqlName;
+    private final int scale;
+    private final boolean delta;
+
+    ArchiveColumn(String field, String sqlName, int scale, boolean delta) {
+        this.field = field;
+        this.sqlName = sqlName;
+        this.scale = scale;
+        this.delta = delta;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    String sqlName() {
+        return sqlName;
+    }
+
+    int scale() {
+        return scale;
+    }
+
+    /**
+     * 按相邻差值存储，适用于递增的时间和ID
+     */
+    boolean delta() {
+        return delta;
+    }
+
+    /**
+     * 以秒级时间戳存储的时间列
+     */
+    boolean time() {
+        return this == DATE_TIME || this == CREATED_AT || this == UPDATED_AT;
+    }
+
+    long toStored(BigDecimal value) {
+        return value.setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValue();
+    }
+
+    double fromStored(double stored) {
+        return scale == 0 ? stored : stored / Math.pow(10, scale);
+    }
+
+    /**
+     * 按DTO字段名或数据库列名查找，不区分大小写
+     */
+    public static ArchiveColumn parse(String name) {
+        for (ArchiveColumn column : COLUMNS) {
+            if (column.field.equalsIgnoreCase(name) || column.sqlName.equalsIgnoreCase(name)) {
+                return column;
+            }
+        }
+        throw new IllegalArgumentException("未知的归档列: " + name);
+    }
+}
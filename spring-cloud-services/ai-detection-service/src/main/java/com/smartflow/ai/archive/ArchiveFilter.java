@@ -0,0 +1,49 @@
+package com.smartflow.ai.archive;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 归档查询的列过滤条件：min <= 值 <= max，边界为空表示不限
+ * 先和文件页脚的最小/最大值比较，整个文件不满足时不读取该文件的任何列
+ */
+public final class ArchiveFilter {
+
+    private final ArchiveColumn column;
+    private final long min;
+    private final long max;
+
+    ArchiveFilter(ArchiveColumn column, long min, long max) {
+        this.column = column;
+        this.min = min;
+        this.max = max;
+    }
+
+    public static ArchiveFilter between(ArchiveColumn column, Number min, Number max) {
+        return new ArchiveFilter(column, bound(column, min, RoundingMode.CEILING, Long.MIN_VALUE),
+                bound(column, max, RoundingMode.FLOOR, Long.MAX_VALUE));
+    }
+
+    private static long bound(ArchiveColumn column, Number value, RoundingMode rounding, long open) {
+        if (value == null) {
+            return open;
+        }
+        BigDecimal stored = new BigDecimal(value.toString()).movePointRight(column.scale());
+        return stored.setScale(0, rounding).longValueExact();
+    }
+
+    ArchiveColumn column() {
+        return column;
+    }
+
+    boolean matches(long value) {
+        return value >= min && value <= max;
+    }
+
+    /**
+     * 文件中该列的取值范围与条件没有交集时整个文件可以跳过
+     */
+    boolean mayMatch(long columnMin, long columnMax) {
+        return columnMax >= min && columnMin <= max;
+    }
+}
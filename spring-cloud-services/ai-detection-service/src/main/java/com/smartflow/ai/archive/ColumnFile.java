@@ -0,0 +1,361 @@
+package com.smartflow.ai.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 列式归档文件，一个文件保存一个分区中一个摄像头一天的交通数据
+ *
+ * <pre>
+ * "SFCA" 版本(1字节)
+ * 各列数据块: [空值位图] + 整列数值 zigzag 变长编码，整块 Deflate 压缩；时间和ID存相邻差值，
+ *            空值位图只在该列有空值时写入，空值位置的数值不参与计算
+ * 页脚: 行数, cameraId, 列数, 每列 [列序号(1字节), 偏移, 压缩长度, 原始长度, 空值数, 最小值, 最大值]
+ * 页脚长度(int) "SFCA"
+ * </pre>
+ *
+ * 最小/最大值只统计非空值。版本1的文件没有空值位图和页脚中的空值数，文件中没有的列按全部为空读取。
+ * 读取时先只读页脚，按各列最小/最大值判断能否跳过整个文件，再按需解压查询用到的列
+ */
+final class ColumnFile implements Closeable {
+
+    private static final int MAGIC = 0x53464341;
+    private static final byte VERSION = 2;
+    private static final byte VERSION_WITHOUT_NULLS = 1;
+    private static final int TRAILER_LENGTH = 8;
+
+    private final FileChannel channel;
+    private final int rowCount;
+    private final long cameraId;
+    private final ColumnMeta[] columns;
+
+    private ColumnFile(FileChannel channel, int rowCount, long cameraId, ColumnMeta[] columns) {
+        this.channel = channel;
+        this.rowCount = rowCount;
+        this.cameraId = cameraId;
+        this.columns = columns;
+    }
+
+    /**
+     * 按行追加的列缓冲区，写文件前在内存中攒齐一个文件的数据
+     */
+    static final class Rows {
+        private long[][] values = new long[ArchiveColumn.COLUMNS.length][1024];
+        private final BitSet[] nulls = new BitSet[ArchiveColumn.COLUMNS.length];
+        private int size;
+
+        Rows() {
+            for (int i = 0; i < nulls.length; i++) {
+                nulls[i] = new BitSet();
+            }
+        }
+
+        /**
+         * @param rowNulls 为 true 的列为空值，对应的 row 值被忽略
+         */
+        void add(long[] row, boolean[] rowNulls) {
+            if (size == values[0].length) {
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = Arrays.copyOf(values[i], size * 2);
+                }
+            }
+            for (int i = 0; i < values.length; i++) {
+                values[i][size] = row[i];
+                if (rowNulls[i]) {
+                    nulls[i].set(size);
+                }
+            }
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+            for (BitSet columnNulls : nulls) {
+                columnNulls.clear();
+            }
+        }
+    }
+
+    /**
+     * 解压后的一列
+     */
+    static final class ColumnData {
+        private final long[] values;
+        private final BitSet nulls;
+
+        ColumnData(long[] values, BitSet nulls) {
+            this.values = values;
+            this.nulls = nulls;
+        }
+
+        boolean isNull(int row) {
+            return nulls.get(row);
+        }
+
+        /**
+         * 空值位置的返回值无意义
+         */
+        long value(int row) {
+            return values[row];
+        }
+    }
+
+    private static final class ColumnMeta {
+        private long offset;
+        private int compressedLength;
+        private int rawLength;
+        private int nullCount;
+        private long min;
+        private long max;
+    }
+
+    /**
+     * 写入临时文件并落盘后原子移动到目标位置
+     * 目标是写入方独占的分段（见 TrafficArchive），已存在时只会是同一分区的上一次归档，可以替换
+     */
+    static void write(Path target, long cameraId, Rows rows) throws IOException {
+        int bitmapLength = (rows.size + 7) / 8;
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        ArchiveColumn[] all = ArchiveColumn.COLUMNS;
+        ColumnMeta[] metas = new ColumnMeta[all.length];
+        Deflater deflater = new Deflater();
+        try (OutputStream file = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(file)) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            long offset = 5;
+            byte[] buffer = new byte[65536];
+            for (ArchiveColumn column : all) {
+                long[] values = rows.values[column.ordinal()];
+                BitSet nulls = rows.nulls[column.ordinal()];
+                ColumnMeta meta = new ColumnMeta();
+                meta.nullCount = nulls.cardinality();
+                meta.min = Long.MAX_VALUE;
+                meta.max = Long.MIN_VALUE;
+                for (int i = 0; i < rows.size; i++) {
+                    if (!nulls.get(i)) {
+                        meta.min = Math.min(meta.min, values[i]);
+                        meta.max = Math.max(meta.max, values[i]);
+                    }
+                }
+                byte[] raw = encode(values, nulls, rows.size, column.delta(),
+                        meta.nullCount > 0 ? bitmapLength : 0);
+                deflater.reset();
+                deflater.setInput(raw);
+                deflater.finish();
+                int compressed = 0;
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(buffer);
+                    out.write(buffer, 0, n);
+                    compressed += n;
+                }
+                meta.offset = offset;
+                meta.compressedLength = compressed;
+                meta.rawLength = raw.length;
+                metas[column.ordinal()] = meta;
+                offset += compressed;
+            }
+
+            ByteArrayOutputStream footerBytes = new ByteArrayOutputStream();
+            DataOutputStream footer = new DataOutputStream(footerBytes);
+            footer.writeInt(rows.size);
+            footer.writeLong(cameraId);
+            footer.writeShort(all.length);
+            for (int i = 0; i < all.length; i++) {
+                footer.writeByte(i);
+                footer.writeLong(metas[i].offset);
+                footer.writeInt(metas[i].compressedLength);
+                footer.writeInt(metas[i].rawLength);
+                footer.writeInt(metas[i].nullCount);
+                footer.writeLong(metas[i].min);
+                footer.writeLong(metas[i].max);
+            }
+            footer.flush();
+            footerBytes.writeTo(out);
+            out.writeInt(footerBytes.size());
+            out.writeInt(MAGIC);
+        } finally {
+            deflater.end();
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 打开文件并读取页脚，列数据在 {@link #read} 时才读取
+     */
+    static ColumnFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < 5 + TRAILER_LENGTH) {
+                throw new IOException("不是有效的归档文件: " + path);
+            }
+            byte version = readFully(channel, 4, 1).get();
+            if (version != VERSION && version != VERSION_WITHOUT_NULLS) {
+                throw new IOException("不支持的归档文件版本 " + version + ": " + path);
+            }
+            ByteBuffer trailer = readFully(channel, size - TRAILER_LENGTH, TRAILER_LENGTH);
+            int footerLength = trailer.getInt();
+            if (trailer.getInt() != MAGIC || footerLength <= 0 || footerLength > size - TRAILER_LENGTH) {
+                throw new IOException("不是有效的归档文件: " + path);
+            }
+            ByteBuffer footer = readFully(channel, size - TRAILER_LENGTH - footerLength, footerLength);
+            int rowCount = footer.getInt();
+            long cameraId = footer.getLong();
+            int count = footer.getShort();
+            ColumnMeta[] columns = new ColumnMeta[ArchiveColumn.COLUMNS.length];
+            for (int i = 0; i < count; i++) {
+                int ordinal = footer.get() & 0xFF;
+                ColumnMeta meta = new ColumnMeta();
+                meta.offset = footer.getLong();
+                meta.compressedLength = footer.getInt();
+                meta.rawLength = footer.getInt();
+                meta.nullCount = version == VERSION_WITHOUT_NULLS ? 0 : footer.getInt();
+                meta.min = footer.getLong();
+                meta.max = footer.getLong();
+                if (ordinal < columns.length) {
+                    columns[ordinal] = meta;
+                }
+            }
+            return new ColumnFile(channel, rowCount, cameraId, columns);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    int rowCount() {
+        return rowCount;
+    }
+
+    long cameraId() {
+        return cameraId;
+    }
+
+    /**
+     * 按页脚的最小/最大值判断文件中是否可能有满足条件的行，空值不满足任何条件
+     */
+    boolean mayMatch(ArchiveFilter filter) {
+        ColumnMeta meta = columns[filter.column().ordinal()];
+        return meta != null && meta.nullCount < rowCount && filter.mayMatch(meta.min, meta.max);
+    }
+
+    /**
+     * 读取并解压一列
+     */
+    ColumnData read(ArchiveColumn column) throws IOException {
+        ColumnMeta meta = columns[column.ordinal()];
+        if (meta == null) {
+            BitSet nulls = new BitSet(rowCount);
+            nulls.set(0, rowCount);
+            return new ColumnData(new long[rowCount], nulls);
+        }
+        ByteBuffer compressed = readFully(channel, meta.offset, meta.compressedLength);
+        byte[] raw = new byte[meta.rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array(), 0, meta.compressedLength);
+            int n = 0;
+            while (n < raw.length) {
+                int read = inflater.inflate(raw, n, raw.length - n);
+                if (read == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new EOFException("归档列数据不完整: " + column);
+                }
+                n += read;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("归档列数据损坏: " + column, e);
+        } finally {
+            inflater.end();
+        }
+        return decode(raw, rowCount, column.delta(), meta.nullCount > 0 ? (rowCount + 7) / 8 : 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 空值位置按差值0（或值0）编码，不打断相邻差值
+     */
+    private static byte[] encode(long[] values, BitSet nulls, int size, boolean delta, int bitmapLength) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bitmapLength + size * 2 + 16);
+        if (bitmapLength > 0) {
+            out.write(Arrays.copyOf(nulls.toByteArray(), bitmapLength), 0, bitmapLength);
+        }
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            long current = nulls.get(i) ? (delta ? previous : 0) : values[i];
+            long value = delta ? current - previous : current;
+            previous = current;
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                out.write((int) ((zigzag & 0x7F) | 0x80));
+                zigzag >>>= 7;
+            }
+            out.write((int) zigzag);
+        }
+        return out.toByteArray();
+    }
+
+    private static ColumnData decode(byte[] raw, int size, boolean delta, int bitmapLength) throws IOException {
+        if (raw.length < bitmapLength) {
+            throw new EOFException("归档列数据不完整");
+        }
+        BitSet nulls = BitSet.valueOf(Arrays.copyOf(raw, bitmapLength));
+        long[] values = new long[size];
+        int position = bitmapLength;
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (position == raw.length || shift > 63) {
+                    throw new EOFException("归档列数据不完整");
+                }
+                b = raw[position++];
+                zigzag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            long value = (zigzag >>> 1) ^ -(zigzag & 1);
+            previous = delta ? previous + value : value;
+            values[i] = previous;
+        }
+        return new ColumnData(values, nulls);
+    }
+}
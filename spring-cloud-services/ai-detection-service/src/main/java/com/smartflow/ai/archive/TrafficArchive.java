@@ -0,0 +1,242 @@
+package com.smartflow.ai.archive;
+
+import com.smartflow.ai.dto.ArchiveAggregateDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 超过保留期的交通数据的列式归档
+ * 目录结构为 archive-dir/traffic/yyyyMMdd/camera-{cameraId}.{分区名}.sfc，无摄像头编号的数据归入 camera-0；
+ * 每个分区写自己的分段文件：分区删除后更早日期的迟到数据会进入下一个分区，
+ * 同一摄像头同一天可能有多个分段，任何分区的归档都不会覆盖其他分区已写入的数据。
+ * 查询按日期目录和摄像头选择全部分段，再用页脚的最小/最大值跳过不满足条件的文件，只解压用到的列
+ */
+@Slf4j
+@Component
+public class TrafficArchive {
+
+    /**
+     * 无摄像头编号的数据归入的摄像头，与汇总表一致
+     */
+    public static final long UNKNOWN_CAMERA = 0L;
+
+    private static final String FILE_SUFFIX = ".sfc";
+    private static final DateTimeFormatter DAY_DIRECTORY = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final long SECONDS_PER_DAY = 86400L;
+
+    @Value("${ai.detection.partitioning.archive-dir:/app/data/archive}")
+    private String archiveDir;
+
+    private Path root;
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(archiveDir).toAbsolutePath().resolve("traffic");
+        Files.createDirectories(root);
+    }
+
+    /**
+     * 把 traffic_data 的一个分区按摄像头和日期写成归档分段
+     * 首个日分区还包含更早的数据，因此分段按每行自身的日期而不是分区日期存放；
+     * 删除分区失败后重新归档只会替换该分区自己的分段，分区中的行仍然完整
+     *
+     * @param jdbc 执行分区维护的连接
+     * @return 归档行数
+     */
+    public long archivePartition(JdbcTemplate jdbc, String partition) {
+        StringBuilder columns = new StringBuilder("COALESCE(camera_id, " + UNKNOWN_CAMERA + ") AS camera");
+        for (ArchiveColumn column : ArchiveColumn.COLUMNS) {
+            columns.append(", ").append(column.sqlName());
+        }
+        JdbcTemplate streaming = new JdbcTemplate(jdbc.getDataSource());
+        streaming.setFetchSize(1000);
+
+        ColumnFile.Rows rows = new ColumnFile.Rows();
+        long[] row = new long[ArchiveColumn.COLUMNS.length];
+        boolean[] nulls = new boolean[ArchiveColumn.COLUMNS.length];
+        long[] current = {-1, Long.MIN_VALUE};
+        long[] total = {0};
+        // 同一摄像头同一天的行连续出现，攒齐后写一个文件
+        streaming.query("SELECT " + columns + " FROM traffic_data PARTITION (" + partition + ") "
+                + "ORDER BY camera, date_time", rs -> {
+            long cameraId = rs.getLong(1);
+            read(rs, row, nulls);
+            long day = Math.floorDiv(row[ArchiveColumn.DATE_TIME.ordinal()], SECONDS_PER_DAY);
+            if ((cameraId != current[0] || day != current[1]) && rows.size() > 0) {
+                flush(current[0], current[1], partition, rows);
+            }
+            current[0] = cameraId;
+            current[1] = day;
+            rows.add(row, nulls);
+            total[0]++;
+        });
+        if (rows.size() > 0) {
+            flush(current[0], current[1], partition, rows);
+        }
+        return total[0];
+    }
+
+    /**
+     * 统计闭区间 [startTime, endTime] 内归档数据某一列非空值的条数、合计、最小、最大和平均值
+     *
+     * @param cameraId 为空时统计所有摄像头
+     * @param filters  其他列的过滤条件
+     */
+    public ArchiveAggregateDTO aggregate(ArchiveColumn column, LocalDateTime startTime, LocalDateTime endTime,
+                                         Long cameraId, ArchiveFilter... filters) {
+        List<ArchiveFilter> conditions = new ArrayList<>(filters.length + 1);
+        // 原始数据精度为秒
+        LocalDateTime from = startTime.truncatedTo(ChronoUnit.SECONDS).equals(startTime)
+                ? startTime : startTime.truncatedTo(ChronoUnit.SECONDS).plusSeconds(1);
+        conditions.add(ArchiveFilter.between(ArchiveColumn.DATE_TIME,
+                from.toEpochSecond(ZoneOffset.UTC), endTime.toEpochSecond(ZoneOffset.UTC)));
+        for (ArchiveFilter filter : filters) {
+            conditions.add(filter);
+        }
+
+        Accumulator result = new Accumulator();
+        int scanned = 0;
+        int skipped = 0;
+        for (LocalDate day = startTime.toLocalDate(); !day.isAfter(endTime.toLocalDate()); day = day.plusDays(1)) {
+            for (Path file : files(day, cameraId)) {
+                try (ColumnFile columnFile = ColumnFile.open(file)) {
+                    if (!conditions.stream().allMatch(columnFile::mayMatch)) {
+                        skipped++;
+                        continue;
+                    }
+                    scanned++;
+                    scan(columnFile, column, conditions, result);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("读取归档文件失败: " + file, e);
+                }
+            }
+        }
+        log.debug("归档查询 {} {} - {}, cameraId={}: 扫描 {} 个文件, 跳过 {} 个",
+                column, startTime, endTime, cameraId, scanned, skipped);
+        return result.toDto(column);
+    }
+
+    private static void scan(ColumnFile file, ArchiveColumn column, List<ArchiveFilter> conditions,
+                             Accumulator result) throws IOException {
+        int rowCount = file.rowCount();
+        boolean[] selected = new boolean[rowCount];
+        Arrays.fill(selected, true);
+        ColumnFile.ColumnData[] loaded = new ColumnFile.ColumnData[ArchiveColumn.COLUMNS.length];
+        for (ArchiveFilter condition : conditions) {
+            int ordinal = condition.column().ordinal();
+            if (loaded[ordinal] == null) {
+                loaded[ordinal] = file.read(condition.column());
+            }
+            ColumnFile.ColumnData values = loaded[ordinal];
+            for (int i = 0; i < rowCount; i++) {
+                selected[i] = selected[i] && !values.isNull(i) && condition.matches(values.value(i));
+            }
+        }
+        ColumnFile.ColumnData values = loaded[column.ordinal()] != null ? loaded[column.ordinal()] : file.read(column);
+        // 与 SQL 聚合函数一致，空值不计入
+        for (int i = 0; i < rowCount; i++) {
+            if (selected[i] && !values.isNull(i)) {
+                result.add(values.value(i));
+            }
+        }
+    }
+
+    private List<Path> files(LocalDate day, Long cameraId) {
+        Path directory = root.resolve(DAY_DIRECTORY.format(day));
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        // 按分区的分段为 camera-{id}.{分区名}.sfc，早期按天整文件写入的为 camera-{id}.sfc
+        String glob = cameraId != null
+                ? "camera-" + cameraId + "{" + FILE_SUFFIX + ",.*" + FILE_SUFFIX + "}"
+                : "camera-*" + FILE_SUFFIX;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取归档目录失败: " + directory, e);
+        }
+        return files;
+    }
+
+    private void flush(long cameraId, long epochDay, String partition, ColumnFile.Rows rows) {
+        Path directory = root.resolve(DAY_DIRECTORY.format(LocalDate.ofEpochDay(epochDay)));
+        try {
+            Files.createDirectories(directory);
+            ColumnFile.write(directory.resolve(segmentName(cameraId, partition)), cameraId, rows);
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入归档文件失败: " + directory, e);
+        }
+        rows.clear();
+    }
+
+    private static String segmentName(long cameraId, String partition) {
+        return "camera-" + cameraId + "." + partition + FILE_SUFFIX;
+    }
+
+    /**
+     * 第1列为 camera_id，之后按 ArchiveColumn 顺序
+     */
+    private static void read(ResultSet rs, long[] row, boolean[] nulls) throws SQLException {
+        for (ArchiveColumn column : ArchiveColumn.COLUMNS) {
+            int index = column.ordinal() + 2;
+            int ordinal = column.ordinal();
+            if (column.time()) {
+                Timestamp value = rs.getTimestamp(index);
+                nulls[ordinal] = value == null;
+                row[ordinal] = value != null ? value.toLocalDateTime().toEpochSecond(ZoneOffset.UTC) : 0L;
+            } else {
+                BigDecimal value = rs.getBigDecimal(index);
+                nulls[ordinal] = value == null;
+                row[ordinal] = value != null ? column.toStored(value) : 0L;
+            }
+        }
+    }
+
+    /**
+     * 按存储的定点整数累加，输出时换算回原始精度
+     */
+    private static final class Accumulator {
+        private long count;
+        private double sum;
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
+
+        void add(long value) {
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        ArchiveAggregateDTO toDto(ArchiveColumn column) {
+            if (count == 0) {
+                return new ArchiveAggregateDTO(column.getField(), 0L, null, null, null, null);
+            }
+            return new ArchiveAggregateDTO(column.getField(), count, column.fromStored(sum),
+                    column.fromStored(min), column.fromStored(max), column.fromStored(sum / count));
+        }
+    }
+}
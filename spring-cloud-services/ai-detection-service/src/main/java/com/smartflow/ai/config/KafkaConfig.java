@@ -2,6 +2,8 @@ package com.smartflow.ai.config;
 
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
@@ -28,56 +30,124 @@ public class KafkaConfig {
     @Value("${spring.kafka.consumer.group-id}")
     private String groupId;
     
+    @Value("${ai.detection.kafka.max-poll-records:500}")
+    private int maxPollRecords;
+    
+    @Value("${ai.detection.kafka.concurrency:1}")
+    private int concurrency;
+    
+    @Value("${ai.detection.kafka.producer.compression-type:lz4}")
+    private String compressionType;
+    
+    @Value("${ai.detection.kafka.producer.batch-size:65536}")
+    private int producerBatchSize;
+    
+    @Value("${ai.detection.kafka.producer.linger-ms:10}")
+    private int lingerMs;
+    
     /**
      * 生产者配置
      */
     @Bean
     public ProducerFactory<String, String> producerFactory() {
+        return new DefaultKafkaProducerFactory<>(producerProps(StringSerializer.class));
+    }
+    
+    /**
+     * KafkaTemplate
+     */
+    @Bean
+    public KafkaTemplate<String, String> kafkaTemplate() {
+        return new KafkaTemplate<>(producerFactory());
+    }
+    
+    /**
+     * 二进制消息生产者配置，消息体由 RecordCodec 编码
+     */
+    @Bean
+    public ProducerFactory<String, byte[]> binaryProducerFactory() {
+        return new DefaultKafkaProducerFactory<>(producerProps(ByteArraySerializer.class));
+    }
+    
+    /**
+     * 二进制消息KafkaTemplate
+     */
+    @Bean
+    public KafkaTemplate<String, byte[]> binaryKafkaTemplate() {
+        return new KafkaTemplate<>(binaryProducerFactory());
+    }
+    
+    /**
+     * 生产者公共配置
+     * 逐帧消息体很小，适当等待凑满批次再压缩发送，减少请求数和带宽
+     */
+    private Map<String, Object> producerProps(Class<?> valueSerializer) {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, valueSerializer);
         configProps.put(ProducerConfig.ACKS_CONFIG, "all");
         configProps.put(ProducerConfig.RETRIES_CONFIG, 3);
-        configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, 16384);
-        configProps.put(ProducerConfig.LINGER_MS_CONFIG, 1);
+        configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, producerBatchSize);
+        configProps.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        configProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
         configProps.put(ProducerConfig.BUFFER_MEMORY_CONFIG, 33554432);
-        return new DefaultKafkaProducerFactory<>(configProps);
+        return configProps;
     }
     
     /**
-     * KafkaTemplate
+     * 消费者配置
      */
     @Bean
-    public KafkaTemplate<String, String> kafkaTemplate() {
-        return new KafkaTemplate<>(producerFactory());
+    public ConsumerFactory<String, String> consumerFactory() {
+        return new DefaultKafkaConsumerFactory<>(consumerProps(StringDeserializer.class));
     }
     
     /**
-     * 消费者配置
+     * 二进制消息消费者配置，消息体保持原始字节，由监听器按 schema-id 消息头解码
      */
     @Bean
-    public ConsumerFactory<String, String> consumerFactory() {
+    public ConsumerFactory<String, byte[]> binaryConsumerFactory() {
+        return new DefaultKafkaConsumerFactory<>(consumerProps(ByteArrayDeserializer.class));
+    }
+    
+    private Map<String, Object> consumerProps(Class<?> valueDeserializer) {
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, valueDeserializer);
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
         props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
-        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 500);
-        return new DefaultKafkaConsumerFactory<>(props);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        return props;
     }
     
     /**
      * 消费者监听器容器工厂
+     * 批量监听模式，每次poll最多 max-poll-records 条，整批处理完成后提交一次偏移量
+     * 并发数为默认值，各监听器可按主题分区数单独覆盖
      */
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, String> kafkaListenerContainerFactory() {
         ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
-        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
+        factory.setBatchListener(true);
+        factory.setConcurrency(concurrency);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        return factory;
+    }
+    
+    /**
+     * 二进制消息监听器容器工厂，批量和提交方式与默认工厂相同
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> binaryKafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(binaryConsumerFactory());
+        factory.setBatchListener(true);
+        factory.setConcurrency(concurrency);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
         return factory;
     }
 }
-
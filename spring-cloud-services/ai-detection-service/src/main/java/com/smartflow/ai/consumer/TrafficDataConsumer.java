@@ -1,72 +1,205 @@
 package com.smartflow.ai.consumer;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartflow.ai.dto.AccidentDetectionDTO;
+import com.smartflow.ai.dto.TrafficDataDTO;
+import com.smartflow.ai.entity.AccidentDetection;
+import com.smartflow.ai.messaging.DetectionTopics;
+import com.smartflow.ai.messaging.RecordCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.support.Acknowledgment;
-import org.springframework.kafka.support.KafkaHeaders;
-import org.springframework.messaging.handler.annotation.Header;
-import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
 /**
  * 交通数据Kafka消费者
+ * 批量监听：整批解析、校验并统计，处理完成后提交一次偏移量
+ * 两个主题的消息由本服务在写入数据库的同一事务中放入发件箱，消费时对应的行已经存在，
+ * 因此不再写回数据库，避免重放把已删除或已超过保留期的行重新插入
+ * 带 schema-id 消息头的消息按 RecordCodec 二进制格式解码，没有该消息头的按JSON解析
  */
 @Component
 @Slf4j
+@RequiredArgsConstructor
 public class TrafficDataConsumer {
-    
+
+    private static final String TRAFFIC_TOPIC = DetectionTopics.TRAFFIC_DATA;
+    private static final String ACCIDENT_TOPIC = DetectionTopics.ACCIDENT_DETECTION;
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, TopicMeters> topicMeters = new HashMap<>();
+
+    /**
+     * 单个主题的指标，启动时注册一次
+     */
+    private static final class TopicMeters {
+        private final Counter invalid;
+        private final Counter binary;
+        private final Counter json;
+        private final DistributionSummary batchSize;
+        private final Timer batchLatency;
+
+        private TopicMeters(String topic, MeterRegistry registry) {
+            invalid = Counter.builder("ai.detection.consumer.invalid")
+                    .description("校验失败被跳过的消息数")
+                    .tag("topic", topic)
+                    .register(registry);
+            binary = encodingCounter(topic, "binary", registry);
+            json = encodingCounter(topic, "json", registry);
+            batchSize = DistributionSummary.builder("ai.detection.consumer.batch.size")
+                    .description("单次消费批次的消息数")
+                    .tag("topic", topic)
+                    .register(registry);
+            batchLatency = Timer.builder("ai.detection.consumer.batch.latency")
+                    .description("单次消费批次的处理耗时")
+                    .tag("topic", topic)
+                    .register(registry);
+        }
+
+        /**
+         * 按编码统计消息数，用于确认生产者已全部切换到二进制格式
+         */
+        private static Counter encodingCounter(String topic, String encoding, MeterRegistry registry) {
+            return Counter.builder("ai.detection.consumer.records")
+                    .description("按消息编码统计的消费消息数")
+                    .tag("topic", topic)
+                    .tag("encoding", encoding)
+                    .register(registry);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        topicMeters.put(TRAFFIC_TOPIC, new TopicMeters(TRAFFIC_TOPIC, meterRegistry));
+        topicMeters.put(ACCIDENT_TOPIC, new TopicMeters(ACCIDENT_TOPIC, meterRegistry));
+    }
+
     /**
      * 消费交通数据消息
      */
-    @KafkaListener(topics = "traffic-data-topic", groupId = "ai-detection-group")
-    public void consumeTrafficData(@Payload String message,
-                                 @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
-                                 @Header(KafkaHeaders.RECEIVED_PARTITION_ID) int partition,
-                                 @Header(KafkaHeaders.OFFSET) long offset,
-                                 Acknowledgment acknowledgment) {
-        try {
-            log.info("接收到交通数据消息 - Topic: {}, Partition: {}, Offset: {}, Message: {}", 
-                    topic, partition, offset, message);
-            
-            // 这里可以添加具体的业务逻辑
-            // 例如：数据验证、存储、分析等
-            
-            // 手动确认消息
-            acknowledgment.acknowledge();
-            
-            log.info("交通数据消息处理完成");
-            
-        } catch (Exception e) {
-            log.error("处理交通数据消息失败", e);
-            // 根据业务需求决定是否重试或丢弃消息
+    @KafkaListener(topics = TRAFFIC_TOPIC, groupId = "ai-detection-group",
+            containerFactory = "binaryKafkaListenerContainerFactory",
+            concurrency = "${ai.detection.kafka.traffic-data.concurrency:${ai.detection.kafka.concurrency:1}}")
+    public void consumeTrafficData(List<ConsumerRecord<String, byte[]>> records, Acknowledgment acknowledgment) {
+        long start = System.nanoTime();
+        int accepted = 0;
+        for (ConsumerRecord<String, byte[]> record : records) {
+            TrafficDataDTO data = parse(record, TrafficDataDTO.class, RecordCodec::decodeTrafficSample);
+            if (data != null && isValid(data)) {
+                accepted++;
+            } else {
+                rejectRecord(record);
+            }
         }
+        acknowledgment.acknowledge();
+
+        recordBatch(TRAFFIC_TOPIC, records.size(), start);
+        log.debug("交通数据批次处理完成: 接收 {} 条, 有效 {} 条", records.size(), accepted);
     }
-    
+
     /**
      * 消费事故检测消息
      */
-    @KafkaListener(topics = "accident-detection-topic", groupId = "ai-detection-group")
-    public void consumeAccidentDetection(@Payload String message,
-                                       @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
-                                       @Header(KafkaHeaders.RECEIVED_PARTITION_ID) int partition,
-                                       @Header(KafkaHeaders.OFFSET) long offset,
-                                       Acknowledgment acknowledgment) {
+    @KafkaListener(topics = ACCIDENT_TOPIC, groupId = "ai-detection-group",
+            containerFactory = "binaryKafkaListenerContainerFactory",
+            concurrency = "${ai.detection.kafka.accident-detection.concurrency:${ai.detection.kafka.concurrency:1}}")
+    public void consumeAccidentDetection(List<ConsumerRecord<String, byte[]>> records, Acknowledgment acknowledgment) {
+        long start = System.nanoTime();
+        int accepted = 0;
+        for (ConsumerRecord<String, byte[]> record : records) {
+            AccidentDetectionDTO data = parse(record, AccidentDetectionDTO.class, RecordCodec::decodeAccidentNotification);
+            if (data != null && isValid(data)) {
+                accepted++;
+            } else {
+                rejectRecord(record);
+            }
+        }
+        acknowledgment.acknowledge();
+
+        recordBatch(ACCIDENT_TOPIC, records.size(), start);
+        log.debug("事故检测批次处理完成: 接收 {} 条, 有效 {} 条", records.size(), accepted);
+    }
+
+    private <T> T parse(ConsumerRecord<String, byte[]> record, Class<T> type,
+                        BiFunction<Integer, byte[], T> decoder) {
+        if (record.value() == null) {
+            return null;
+        }
+        Header schema = record.headers().lastHeader(RecordCodec.SCHEMA_HEADER);
+        String encoding = schema != null ? "binary" : "json";
         try {
-            log.info("接收到事故检测消息 - Topic: {}, Partition: {}, Offset: {}, Message: {}", 
-                    topic, partition, offset, message);
-            
-            // 这里可以添加具体的业务逻辑
-            // 例如：事故分析、通知发送、数据存储等
-            
-            // 手动确认消息
-            acknowledgment.acknowledge();
-            
-            log.info("事故检测消息处理完成");
-            
+            T value = schema != null
+                    ? decoder.apply(RecordCodec.parseSchemaHeader(schema.value()), record.value())
+                    : objectMapper.readValue(record.value(), type);
+            TopicMeters meters = topicMeters.get(record.topic());
+            (schema != null ? meters.binary : meters.json).increment();
+            return value;
         } catch (Exception e) {
-            log.error("处理事故检测消息失败", e);
-            // 根据业务需求决定是否重试或丢弃消息
+            log.debug("消息解析失败 - Topic: {}, Partition: {}, Offset: {}, Encoding: {}, Size: {}",
+                    record.topic(), record.partition(), record.offset(), encoding, record.value().length, e);
+            return null;
         }
     }
-}
 
+    private boolean isValid(TrafficDataDTO data) {
+        return data.getId() != null
+                && data.getDateTime() != null
+                && (data.getVolume() == null || data.getVolume().signum() >= 0)
+                && (data.getCongestionLevel() == null
+                    || (data.getCongestionLevel() >= 0 && data.getCongestionLevel() <= 2));
+    }
+
+    private boolean isValid(AccidentDetectionDTO data) {
+        return data.getId() != null
+                && data.getDateTime() != null
+                && data.getConfidenceScore() != null
+                && data.getConfidenceScore().signum() >= 0
+                && data.getConfidenceScore().compareTo(BigDecimal.ONE) <= 0
+                && isEnumName(AccidentDetection.Severity.class, data.getSeverity())
+                && isEnumName(AccidentDetection.Status.class, data.getStatus());
+    }
+
+    private static <E extends Enum<E>> boolean isEnumName(Class<E> type, String name) {
+        if (name == null) {
+            return true;
+        }
+        for (E constant : type.getEnumConstants()) {
+            if (constant.name().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 无效消息跳过，不阻塞整批提交
+     */
+    private void rejectRecord(ConsumerRecord<String, byte[]> record) {
+        topicMeters.get(record.topic()).invalid.increment();
+        log.warn("跳过无效消息 - Topic: {}, Partition: {}, Offset: {}",
+                record.topic(), record.partition(), record.offset());
+    }
+
+    private void recordBatch(String topic, int size, long startNanos) {
+        TopicMeters meters = topicMeters.get(topic);
+        meters.batchSize.record(size);
+        meters.batchLatency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -1,16 +1,26 @@
 package com.smartflow.ai.controller;
 
 import com.smartflow.ai.dto.AccidentDetectionDTO;
+import com.smartflow.ai.dto.AccidentSummaryDTO;
 import com.smartflow.ai.service.AccidentDetectionService;
+import com.smartflow.ai.service.FrameStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 事故检测控制器
@@ -22,6 +32,7 @@ import java.util.List;
 public class AccidentDetectionController {
     
     private final AccidentDetectionService accidentDetectionService;
+    private final FrameStore frameStore;
     
     /**
      * 保存事故检测数据
@@ -43,15 +54,43 @@ public class AccidentDetectionController {
         return ResponseEntity.ok(accidentDetection);
     }
     
+    /**
+     * 获取事故图片
+     * 从帧存储内存映射读取并流式输出；内容按哈希寻址，不会变化，可长期缓存
+     */
+    @GetMapping("/{id}/image")
+    public ResponseEntity<StreamingResponseBody> getAccidentImage(@PathVariable Long id) throws IOException {
+        String imageRef = accidentDetectionService.getImageRef(id);
+        MappedByteBuffer image = imageRef != null ? frameStore.map(imageRef) : null;
+        if (image == null) {
+            return ResponseEntity.notFound().build();
+        }
+        StreamingResponseBody body = outputStream -> {
+            WritableByteChannel channel = Channels.newChannel(outputStream);
+            while (image.hasRemaining()) {
+                channel.write(image);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(image.remaining())
+                .eTag(imageRef)
+                .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate())
+                .body(body);
+    }
+    
     /**
      * 根据时间范围查询事故检测数据
      */
     @GetMapping("/time-range")
-    public ResponseEntity<List<AccidentDetectionDTO>> getAccidentDetectionByTimeRange(
+    public ResponseEntity<List<AccidentSummaryDTO>> getAccidentDetectionByTimeRange(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
-        log.info("查询时间范围内的事故检测数据: {} - {}", startTime, endTime);
-        List<AccidentDetectionDTO> accidentDetectionList = accidentDetectionService.getAccidentDetectionByTimeRange(startTime, endTime);
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(required = false) Integer size) {
+        log.info("查询时间范围内的事故检测数据: {} - {}, beforeId={}, size={}", startTime, endTime, beforeId, size);
+        List<AccidentSummaryDTO> accidentDetectionList =
+                accidentDetectionService.getAccidentDetectionByTimeRange(startTime, endTime, beforeId, size);
         return ResponseEntity.ok(accidentDetectionList);
     }
     
@@ -59,9 +98,13 @@ public class AccidentDetectionController {
      * 根据状态查询事故检测数据
      */
     @GetMapping("/status/{status}")
-    public ResponseEntity<List<AccidentDetectionDTO>> getAccidentDetectionByStatus(@PathVariable String status) {
-        log.info("查询状态为 {} 的事故检测数据", status);
-        List<AccidentDetectionDTO> accidentDetectionList = accidentDetectionService.getAccidentDetectionByStatus(status);
+    public ResponseEntity<List<AccidentSummaryDTO>> getAccidentDetectionByStatus(
+            @PathVariable String status,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(required = false) Integer size) {
+        log.info("查询状态为 {} 的事故检测数据: beforeId={}, size={}", status, beforeId, size);
+        List<AccidentSummaryDTO> accidentDetectionList =
+                accidentDetectionService.getAccidentDetectionByStatus(status, beforeId, size);
         return ResponseEntity.ok(accidentDetectionList);
     }
     
@@ -69,9 +112,13 @@ public class AccidentDetectionController {
      * 根据严重程度查询事故检测数据
      */
     @GetMapping("/severity/{severity}")
-    public ResponseEntity<List<AccidentDetectionDTO>> getAccidentDetectionBySeverity(@PathVariable String severity) {
-        log.info("查询严重程度为 {} 的事故检测数据", severity);
-        List<AccidentDetectionDTO> accidentDetectionList = accidentDetectionService.getAccidentDetectionBySeverity(severity);
+    public ResponseEntity<List<AccidentSummaryDTO>> getAccidentDetectionBySeverity(
+            @PathVariable String severity,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(required = false) Integer size) {
+        log.info("查询严重程度为 {} 的事故检测数据: beforeId={}, size={}", severity, beforeId, size);
+        List<AccidentSummaryDTO> accidentDetectionList =
+                accidentDetectionService.getAccidentDetectionBySeverity(severity, beforeId, size);
         return ResponseEntity.ok(accidentDetectionList);
     }
     
@@ -79,10 +126,13 @@ public class AccidentDetectionController {
      * 查询高置信度的事故检测数据
      */
     @GetMapping("/high-confidence")
-    public ResponseEntity<List<AccidentDetectionDTO>> getHighConfidenceAccidents(
-            @RequestParam(defaultValue = "0.8") Double threshold) {
-        log.info("查询置信度大于 {} 的事故检测数据", threshold);
-        List<AccidentDetectionDTO> accidentDetectionList = accidentDetectionService.getHighConfidenceAccidents(threshold);
+    public ResponseEntity<List<AccidentSummaryDTO>> getHighConfidenceAccidents(
+            @RequestParam(defaultValue = "0.8") Double threshold,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(required = false) Integer size) {
+        log.info("查询置信度大于 {} 的事故检测数据: beforeId={}, size={}", threshold, beforeId, size);
+        List<AccidentSummaryDTO> accidentDetectionList =
+                accidentDetectionService.getHighConfidenceAccidents(threshold, beforeId, size);
         return ResponseEntity.ok(accidentDetectionList);
     }
     
@@ -90,9 +140,11 @@ public class AccidentDetectionController {
      * 查询待处理的事故检测数据
      */
     @GetMapping("/pending")
-    public ResponseEntity<List<AccidentDetectionDTO>> getPendingAccidents() {
-        log.info("查询待处理的事故检测数据");
-        List<AccidentDetectionDTO> accidentDetectionList = accidentDetectionService.getPendingAccidents();
+    public ResponseEntity<List<AccidentSummaryDTO>> getPendingAccidents(
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(required = false) Integer size) {
+        log.info("查询待处理的事故检测数据: beforeId={}, size={}", beforeId, size);
+        List<AccidentSummaryDTO> accidentDetectionList = accidentDetectionService.getPendingAccidents(beforeId, size);
         return ResponseEntity.ok(accidentDetectionList);
     }
     
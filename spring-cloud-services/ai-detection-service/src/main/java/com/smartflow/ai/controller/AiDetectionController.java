@@ -1,15 +1,34 @@
 package com.smartflow.ai.controller;
 
 import com.smartflow.ai.dto.TrafficInfoDto;
-import com.smartflow.ai.model.AccidentDetection;
-import com.smartflow.ai.model.TrafficData;
+import com.smartflow.ai.entity.AccidentDetection;
+import com.smartflow.ai.entity.TrafficData;
+import com.smartflow.ai.exception.BadRequestException;
 import com.smartflow.ai.service.AiDetectionService;
+import com.smartflow.ai.service.DetectionWorkerPool;
+import com.smartflow.ai.service.FrameBufferPool;
+import com.smartflow.ai.service.TrafficDataService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadBase;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * AI检测服务REST控制器
@@ -21,15 +40,29 @@ import java.util.List;
 public class AiDetectionController {
     
     private final AiDetectionService aiDetectionService;
+    private final DetectionWorkerPool detectionWorkerPool;
+    private final FrameBufferPool frameBufferPool;
+    private final TrafficDataService trafficDataService;
     
     /**
      * 开始视频检测
+     * 指定cameraId时只启动该摄像头，否则启动数据接入服务返回的所有摄像头
      */
     @PostMapping("/start")
-    public ResponseEntity<String> startDetection() {
+    public ResponseEntity<String> startDetection(
+            @RequestParam(required = false) Long cameraId,
+            @RequestParam(required = false) String location,
+            @RequestParam(required = false) Long frameIntervalMs,
+            @RequestParam(required = false) Integer accidentCooldown) {
         try {
-            aiDetectionService.startVideoDetection();
-            return ResponseEntity.ok("Video detection started successfully");
+            if (cameraId == null) {
+                int count = detectionWorkerPool.startAll();
+                return ResponseEntity.ok("Video detection started for " + count + " cameras");
+            }
+            if (detectionWorkerPool.start(cameraId, location, frameIntervalMs, accidentCooldown)) {
+                return ResponseEntity.ok("Video detection started for camera " + cameraId);
+            }
+            return ResponseEntity.ok("Video detection is already running for camera " + cameraId);
         } catch (Exception e) {
             log.error("Error starting video detection", e);
             return ResponseEntity.internalServerError()
@@ -39,12 +72,19 @@ public class AiDetectionController {
     
     /**
      * 停止视频检测
+     * 指定cameraId时只停止该摄像头，否则停止所有摄像头
      */
     @PostMapping("/stop")
-    public ResponseEntity<String> stopDetection() {
+    public ResponseEntity<String> stopDetection(@RequestParam(required = false) Long cameraId) {
         try {
-            aiDetectionService.stopVideoDetection();
-            return ResponseEntity.ok("Video detection stopped successfully");
+            if (cameraId == null) {
+                detectionWorkerPool.stopAll();
+                return ResponseEntity.ok("Video detection stopped successfully");
+            }
+            if (detectionWorkerPool.stop(cameraId)) {
+                return ResponseEntity.ok("Video detection stopped for camera " + cameraId);
+            }
+            return ResponseEntity.ok("Video detection is not running for camera " + cameraId);
         } catch (Exception e) {
             log.error("Error stopping video detection", e);
             return ResponseEntity.internalServerError()
@@ -52,14 +92,25 @@ public class AiDetectionController {
         }
     }
     
+    /**
+     * 获取正在检测的摄像头
+     */
+    @GetMapping("/workers")
+    public ResponseEntity<Set<Long>> getActiveCameras() {
+        return ResponseEntity.ok(detectionWorkerPool.getActiveCameraIds());
+    }
+    
     /**
      * 获取当前交通信息
      */
     @GetMapping("/traffic/current")
-    public ResponseEntity<TrafficInfoDto> getCurrentTrafficInfo() {
+    public ResponseEntity<TrafficInfoDto> getCurrentTrafficInfo(@RequestParam(required = false) Long cameraId) {
         try {
-            TrafficInfoDto trafficInfo = aiDetectionService.getCurrentTrafficInfo();
-            return ResponseEntity.ok(trafficInfo);
+            if (cameraId == null) {
+                return ResponseEntity.ok(aiDetectionService.getCurrentTrafficInfo());
+            }
+            TrafficInfoDto trafficInfo = aiDetectionService.getCurrentTrafficInfo(cameraId);
+            return trafficInfo != null ? ResponseEntity.ok(trafficInfo) : ResponseEntity.notFound().build();
         } catch (Exception e) {
             log.error("Error getting current traffic info", e);
             return ResponseEntity.internalServerError().build();
@@ -67,13 +118,23 @@ public class AiDetectionController {
     }
     
     /**
-     * 获取历史交通数据
+     * 获取所有活跃摄像头的当前交通信息
+     */
+    @GetMapping("/traffic/current/all")
+    public ResponseEntity<Map<Long, TrafficInfoDto>> getAllCurrentTrafficInfo() {
+        return ResponseEntity.ok(aiDetectionService.getAllCurrentTrafficInfo());
+    }
+    
+    /**
+     * 获取历史交通数据，按ID降序分页；完整导出使用 /traffic/history/export
      */
     @GetMapping("/traffic/history")
     public ResponseEntity<List<TrafficData>> getHistoricalTrafficData(
-            @RequestParam(defaultValue = "24") int hours) {
+            @RequestParam(defaultValue = "24") int hours,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(required = false) Integer size) {
         try {
-            List<TrafficData> trafficData = aiDetectionService.getHistoricalTrafficData(hours);
+            List<TrafficData> trafficData = aiDetectionService.getHistoricalTrafficData(hours, beforeId, size);
             return ResponseEntity.ok(trafficData);
         } catch (Exception e) {
             log.error("Error getting historical traffic data", e);
@@ -81,6 +142,25 @@ public class AiDetectionController {
         }
     }
     
+    /**
+     * 流式导出最近若干小时的交通数据
+     * NDJSON或CSV逐行输出，中断后以收到的最后一个ID作为 afterId 续传
+     */
+    @GetMapping("/traffic/history/export")
+    public ResponseEntity<StreamingResponseBody> exportHistoricalTrafficData(
+            @RequestParam(defaultValue = "24") int hours,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "ndjson") String format) {
+        TrafficDataService.ExportFormat exportFormat = TrafficDataService.ExportFormat.parse(format);
+        LocalDateTime endTime = LocalDateTime.now();
+        LocalDateTime startTime = endTime.minusHours(hours);
+        StreamingResponseBody body = outputStream ->
+            trafficDataService.exportTrafficData(startTime, endTime, afterId, exportFormat, outputStream);
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+            .body(body);
+    }
+    
     /**
      * 获取事故检测记录
      */
@@ -106,6 +186,8 @@ public class AiDetectionController {
         try {
             aiDetectionService.updateAccidentStatus(id, status);
             return ResponseEntity.ok("Accident status updated successfully");
+        } catch (BadRequestException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error updating accident status", e);
             return ResponseEntity.internalServerError()
@@ -115,15 +197,80 @@ public class AiDetectionController {
     
     /**
      * 处理单帧图像（用于测试）
+     * 请求体以流方式读入直接内存缓冲区，不在堆内缓冲整帧
      */
-    @PostMapping("/process-frame")
-    public ResponseEntity<TrafficInfoDto> processFrame(@RequestBody byte[] imageData) {
+    @PostMapping({"/process-frame", "/frames"})
+    public ResponseEntity<TrafficInfoDto> processFrame(
+            @RequestParam(required = false) Long cameraId,
+            HttpServletRequest request) {
+        if (request.getContentLengthLong() > frameBufferPool.getBufferSize()) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        ByteBuffer buffer = null;
         try {
-            TrafficInfoDto result = aiDetectionService.processFrame(imageData);
+            buffer = frameBufferPool.acquire();
+            if (buffer == null) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+            }
+            if (!FrameBufferPool.readFrame(request.getInputStream(), buffer)) {
+                return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+            }
+            TrafficInfoDto result = aiDetectionService.processFrame(cameraId, buffer.asReadOnlyBuffer());
             return ResponseEntity.ok(result);
         } catch (Exception e) {
             log.error("Error processing frame", e);
             return ResponseEntity.internalServerError().build();
+        } finally {
+            frameBufferPool.release(buffer);
+        }
+    }
+    
+    /**
+     * 批量处理多帧图像
+     * multipart请求中的每个文件部分为一帧，边解析请求体边逐帧读入同一个缓冲区处理，不缓冲整个请求；
+     * 服务关闭了 Spring 的 multipart 解析，cameraId 只能通过查询参数传递
+     */
+    @PostMapping(value = "/frames/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<List<TrafficInfoDto>> processFrames(
+            @RequestParam(required = false) Long cameraId,
+            HttpServletRequest request) {
+        if (request.getContentLengthLong() > frameBufferPool.getBatchMaxBytes()) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        ServletFileUpload upload = new ServletFileUpload();
+        upload.setSizeMax(frameBufferPool.getBatchMaxBytes());
+        ByteBuffer buffer = null;
+        try {
+            buffer = frameBufferPool.acquire();
+            if (buffer == null) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+            }
+            List<TrafficInfoDto> results = new ArrayList<>();
+            FileItemIterator parts = upload.getItemIterator(request);
+            while (parts.hasNext()) {
+                FileItemStream part = parts.next();
+                if (part.isFormField()) {
+                    continue;
+                }
+                try (InputStream in = part.openStream()) {
+                    if (!FrameBufferPool.readFrame(in, buffer)) {
+                        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+                    }
+                }
+                results.add(aiDetectionService.processFrame(cameraId, buffer.asReadOnlyBuffer()));
+            }
+            return ResponseEntity.ok(results);
+        } catch (FileUploadBase.FileUploadIOException e) {
+            // 未声明长度的请求体在读取过程中超过上限
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        } catch (FileUploadException e) {
+            log.warn("Malformed frame batch: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error processing frame batch", e);
+            return ResponseEntity.internalServerError().build();
+        } finally {
+            frameBufferPool.release(buffer);
         }
     }
     
@@ -1,12 +1,16 @@
 package com.smartflow.ai.controller;
 
+import com.smartflow.ai.dto.ArchiveAggregateDTO;
 import com.smartflow.ai.dto.TrafficDataDTO;
+import com.smartflow.ai.dto.TrafficSummaryDTO;
 import com.smartflow.ai.service.TrafficDataService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 import java.time.LocalDateTime;
@@ -47,21 +51,44 @@ public class TrafficDataController {
      * 根据时间范围查询交通数据
      */
     @GetMapping("/time-range")
-    public ResponseEntity<List<TrafficDataDTO>> getTrafficDataByTimeRange(
+    public ResponseEntity<List<TrafficSummaryDTO>> getTrafficDataByTimeRange(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
-        log.info("查询时间范围内的交通数据: {} - {}", startTime, endTime);
-        List<TrafficDataDTO> trafficDataList = trafficDataService.getTrafficDataByTimeRange(startTime, endTime);
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(required = false) Integer size) {
+        log.info("查询时间范围内的交通数据: {} - {}, beforeId={}, size={}", startTime, endTime, beforeId, size);
+        List<TrafficSummaryDTO> trafficDataList = trafficDataService.getTrafficDataByTimeRange(startTime, endTime, beforeId, size);
         return ResponseEntity.ok(trafficDataList);
     }
     
+    /**
+     * 流式导出时间范围内的交通数据
+     * 输出NDJSON或CSV，按ID升序；中断后以收到的最后一个ID作为 afterId 续传
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportTrafficData(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "ndjson") String format) {
+        log.info("导出交通数据: {} - {}, afterId={}, format={}", startTime, endTime, afterId, format);
+        TrafficDataService.ExportFormat exportFormat = TrafficDataService.ExportFormat.parse(format);
+        StreamingResponseBody body = outputStream ->
+                trafficDataService.exportTrafficData(startTime, endTime, afterId, exportFormat, outputStream);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .body(body);
+    }
+    
     /**
      * 获取最新的交通数据
      */
     @GetMapping("/latest")
-    public ResponseEntity<List<TrafficDataDTO>> getLatestTrafficData() {
-        log.info("查询最新交通数据");
-        List<TrafficDataDTO> trafficDataList = trafficDataService.getLatestTrafficData();
+    public ResponseEntity<List<TrafficSummaryDTO>> getLatestTrafficData(
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(required = false) Integer size) {
+        log.info("查询最新交通数据: beforeId={}, size={}", beforeId, size);
+        List<TrafficSummaryDTO> trafficDataList = trafficDataService.getLatestTrafficData(beforeId, size);
         return ResponseEntity.ok(trafficDataList);
     }
     
@@ -69,9 +96,12 @@ public class TrafficDataController {
      * 根据拥堵级别查询交通数据
      */
     @GetMapping("/congestion/{level}")
-    public ResponseEntity<List<TrafficDataDTO>> getTrafficDataByCongestionLevel(@PathVariable Integer level) {
-        log.info("查询拥堵级别为 {} 的交通数据", level);
-        List<TrafficDataDTO> trafficDataList = trafficDataService.getTrafficDataByCongestionLevel(level);
+    public ResponseEntity<List<TrafficSummaryDTO>> getTrafficDataByCongestionLevel(
+            @PathVariable Integer level,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(required = false) Integer size) {
+        log.info("查询拥堵级别为 {} 的交通数据: beforeId={}, size={}", level, beforeId, size);
+        List<TrafficSummaryDTO> trafficDataList = trafficDataService.getTrafficDataByCongestionLevel(level, beforeId, size);
         return ResponseEntity.ok(trafficDataList);
     }
     
@@ -81,9 +111,10 @@ public class TrafficDataController {
     @GetMapping("/average-volume")
     public ResponseEntity<Double> getAverageVolume(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
-        log.info("查询平均交通量: {} - {}", startTime, endTime);
-        Double averageVolume = trafficDataService.getAverageVolume(startTime, endTime);
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) Long cameraId) {
+        log.info("查询平均交通量: {} - {}, cameraId={}", startTime, endTime, cameraId);
+        Double averageVolume = trafficDataService.getAverageVolume(startTime, endTime, cameraId);
         return ResponseEntity.ok(averageVolume);
     }
     
@@ -93,12 +124,31 @@ public class TrafficDataController {
     @GetMapping("/average-speed")
     public ResponseEntity<Double> getAverageCarSpeed(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
-        log.info("查询平均车速: {} - {}", startTime, endTime);
-        Double averageSpeed = trafficDataService.getAverageCarSpeed(startTime, endTime);
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) Long cameraId) {
+        log.info("查询平均车速: {} - {}, cameraId={}", startTime, endTime, cameraId);
+        Double averageSpeed = trafficDataService.getAverageCarSpeed(startTime, endTime, cameraId);
         return ResponseEntity.ok(averageSpeed);
     }
     
+    /**
+     * 统计超过保留期、已归档的历史交通数据，可按摄像头和拥堵等级过滤
+     */
+    @GetMapping("/archive/aggregate")
+    public ResponseEntity<ArchiveAggregateDTO> getArchivedAggregate(
+            @RequestParam(defaultValue = "volume") String column,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) Long cameraId,
+            @RequestParam(required = false) Integer minCongestionLevel,
+            @RequestParam(required = false) Integer maxCongestionLevel) {
+        log.info("统计归档交通数据 {}: {} - {}, cameraId={}, congestionLevel=[{}, {}]",
+                column, startTime, endTime, cameraId, minCongestionLevel, maxCongestionLevel);
+        ArchiveAggregateDTO aggregate = trafficDataService.getArchivedAggregate(column, startTime, endTime, cameraId,
+                minCongestionLevel, maxCongestionLevel);
+        return ResponseEntity.ok(aggregate);
+    }
+    
     /**
      * 删除交通数据
      */
@@ -22,10 +22,14 @@ public class AccidentDetectionDTO {
     
     private Long id;
     
+    private Long cameraId;
+    
     @NotNull(message = "时间不能为空")
     private LocalDateTime dateTime;
     
-    private String imageData; // Base64编码的图片数据
+    private String imageData; // Base64编码的图片数据，仅用于上传
+    
+    private String imageRef; // 图片引用，通过 /api/accident-detection/{id}/image 获取图片
     
     private String involvedVehicles;
     
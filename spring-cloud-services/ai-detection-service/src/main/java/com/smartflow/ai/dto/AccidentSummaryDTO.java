@@ -0,0 +1,38 @@
+package com.smartflow.ai.dto;
+
+import com.smartflow.ai.entity.AccidentDetection;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 事故检测摘要，列表查询使用，只包含列表展示所需的列
+ */
+@Data
+@NoArgsConstructor
+public class AccidentSummaryDTO {
+    
+    private Long id;
+    private LocalDateTime dateTime;
+    private String involvedVehicles;
+    private BigDecimal confidenceScore;
+    private String severity;
+    private String status;
+    private String location;
+    
+    /**
+     * JPQL构造表达式使用
+     */
+    public AccidentSummaryDTO(Long id, LocalDateTime dateTime, String involvedVehicles, BigDecimal confidenceScore,
+                              AccidentDetection.Severity severity, AccidentDetection.Status status, String location) {
+        this.id = id;
+        this.dateTime = dateTime;
+        this.involvedVehicles = involvedVehicles;
+        this.confidenceScore = confidenceScore;
+        this.severity = severity != null ? severity.name() : null;
+        this.status = status != null ? status.name() : null;
+        this.location = location;
+    }
+}
@@ -0,0 +1,21 @@
+package com.smartflow.ai.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 归档交通数据的统计结果，count 为该列非空值的条数，没有匹配数据时 count 为0，其余为空
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchiveAggregateDTO {
+
+    private String column;
+    private Long count;
+    private Double sum;
+    private Double min;
+    private Double max;
+    private Double average;
+}
@@ -20,6 +20,8 @@ public class TrafficDataDTO {
     
     private Long id;
     
+    private Long cameraId;
+    
     @NotNull(message = "时间不能为空")
     private LocalDateTime dateTime;
     
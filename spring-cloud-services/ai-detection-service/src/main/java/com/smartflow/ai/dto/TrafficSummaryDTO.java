@@ -0,0 +1,28 @@
+package com.smartflow.ai.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 交通数据摘要，列表查询使用，不包含各类车辆速度
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrafficSummaryDTO {
+    
+    private Long id;
+    private LocalDateTime dateTime;
+    private Integer pedestrianCount;
+    private Integer carCount;
+    private Integer bicycleCount;
+    private Integer busCount;
+    private Integer motorcycleCount;
+    private Integer truckCount;
+    private BigDecimal volume;
+    private Integer congestionLevel;
+}
@@ -13,7 +13,10 @@ import java.time.LocalDateTime;
  * 事故检测实体类
  */
 @Entity
-@Table(name = "accident_detection")
+@Table(name = "accident_detection", indexes = {
+        @Index(name = "idx_camera_date_time", columnList = "camera_id, date_time"),
+        @Index(name = "idx_date_time", columnList = "date_time")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -24,12 +27,20 @@ public class AccidentDetection {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
+    /**
+     * 摄像头编号，未指定摄像头的检测结果为空
+     */
+    @Column(name = "camera_id")
+    private Long cameraId;
+    
     @Column(name = "date_time", nullable = false)
     private LocalDateTime dateTime;
     
-    @Lob
-    @Column(name = "image_data")
-    private byte[] imageData;
+    /**
+     * 事故图片在帧存储中的引用（SHA-256），图片本身不入库
+     */
+    @Column(name = "image_ref", length = 64)
+    private String imageRef;
     
     @Column(name = "involved_vehicles")
     private String involvedVehicles;
@@ -13,7 +13,10 @@ import java.time.LocalDateTime;
  * 交通数据实体类
  */
 @Entity
-@Table(name = "traffic_data")
+@Table(name = "traffic_data", indexes = {
+        @Index(name = "idx_camera_date_time", columnList = "camera_id, date_time"),
+        @Index(name = "idx_date_time", columnList = "date_time")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -24,6 +27,12 @@ public class TrafficData {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
+    /**
+     * 摄像头编号，未指定摄像头的检测结果为空
+     */
+    @Column(name = "camera_id")
+    private Long cameraId;
+    
     @Column(name = "date_time", nullable = false)
     private LocalDateTime dateTime;
     
@@ -0,0 +1,11 @@
+package com.smartflow.ai.exception;
+
+/**
+ * 请求参数不合法，由 GlobalExceptionHandler 返回400
+ */
+public class BadRequestException extends RuntimeException {
+
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
@@ -63,6 +63,19 @@ public class GlobalExceptionHandler {
         return ResponseEntity.badRequest().body(response);
     }
     
+    /**
+     * 处理请求参数错误
+     */
+    @ExceptionHandler(BadRequestException.class)
+    public ResponseEntity<Map<String, Object>> handleBadRequestException(BadRequestException ex) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", ex.getMessage());
+        
+        log.warn("请求参数错误: {}", ex.getMessage());
+        return ResponseEntity.badRequest().body(response);
+    }
+    
     /**
      * 处理运行时异常
      */
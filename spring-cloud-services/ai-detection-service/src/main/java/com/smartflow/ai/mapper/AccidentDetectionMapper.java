@@ -0,0 +1,21 @@
+package com.smartflow.ai.mapper;
+
+import com.smartflow.ai.dto.AccidentDetectionDTO;
+import com.smartflow.ai.entity.AccidentDetection;
+import org.mapstruct.Builder;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+/**
+ * 事故检测实体与DTO的转换，实现由 MapStruct 在编译时生成，不使用反射
+ * 不使用 Lombok 生成的 builder，以保留实体字段的默认值；
+ * 严重程度和状态按枚举名称转换，DTO中为空时不覆盖；上传的图片数据由调用方单独处理
+ */
+@Mapper(componentModel = "spring", builder = @Builder(disableBuilder = true))
+public interface AccidentDetectionMapper {
+
+    @Mapping(target = "imageData", ignore = true)
+    AccidentDetectionDTO toDto(AccidentDetection accidentDetection);
+
+    AccidentDetection toEntity(AccidentDetectionDTO accidentDetectionDTO);
+}
@@ -0,0 +1,18 @@
+package com.smartflow.ai.mapper;
+
+import com.smartflow.ai.dto.TrafficDataDTO;
+import com.smartflow.ai.entity.TrafficData;
+import org.mapstruct.Builder;
+import org.mapstruct.Mapper;
+
+/**
+ * 交通数据实体与DTO的转换，实现由 MapStruct 在编译时生成，不使用反射
+ * 不使用 Lombok 生成的 builder，以保留实体字段的默认值
+ */
+@Mapper(componentModel = "spring", builder = @Builder(disableBuilder = true))
+public interface TrafficDataMapper {
+
+    TrafficDataDTO toDto(TrafficData trafficData);
+
+    TrafficData toEntity(TrafficDataDTO trafficDataDTO);
+}
@@ -0,0 +1,224 @@
+package com.smartflow.ai.messaging;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.concurrent.ListenableFuture;
+
+import javax.annotation.PreDestroy;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kafka发件箱
+ * 业务数据和待发送消息在同一事务中写入 detection_outbox，回滚时消息一并丢弃；
+ * 发送线程用 FOR UPDATE SKIP LOCKED 认领一批行（多实例互不阻塞），批量发送并等待确认，
+ * 在同一事务中批量删除已确认的行；发送失败的行保留到下一轮，消息至少投递一次
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DetectionOutbox implements ApplicationRunner {
+
+    private static final String CREATE_TABLE_SQL = "CREATE TABLE IF NOT EXISTS detection_outbox ("
+            + "id BIGINT NOT NULL AUTO_INCREMENT, "
+            + "topic VARCHAR(100) NOT NULL, "
+            + "record_key VARCHAR(100), "
+            + "schema_id INT NOT NULL, "
+            + "payload MEDIUMBLOB NOT NULL, "
+            + "created_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3), "
+            + "PRIMARY KEY (id)"
+            + ") ENGINE=InnoDB";
+
+    private static final String INSERT_SQL = "INSERT INTO detection_outbox (topic, record_key, schema_id, payload) "
+            + "VALUES (?, ?, ?, ?)";
+
+    private static final String CLAIM_SQL = "SELECT id, topic, record_key, schema_id, payload FROM detection_outbox "
+            + "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final KafkaTemplate<String, byte[]> binaryKafkaTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.detection.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Value("${ai.detection.outbox.poll-interval-ms:100}")
+    private long pollIntervalMs;
+
+    @Value("${ai.detection.outbox.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
+
+    private TransactionTemplate transactionTemplate;
+    private Thread relayThread;
+    private volatile boolean running;
+
+    private Timer relayTimer;
+    private DistributionSummary batchSizeSummary;
+    private Counter sentCounter;
+    private Counter failedCounter;
+
+    /**
+     * 写入一条待发送消息，应在业务事务中调用
+     *
+     * @param schemaId RecordCodec 的格式ID，JSON_SCHEMA 表示JSON
+     */
+    public void append(String topic, String key, int schemaId, byte[] payload) {
+        jdbcTemplate.update(INSERT_SQL, ps -> {
+            ps.setString(1, topic);
+            if (key != null) {
+                ps.setString(2, key);
+            } else {
+                ps.setNull(2, Types.VARCHAR);
+            }
+            ps.setInt(3, schemaId);
+            ps.setBytes(4, payload);
+        });
+    }
+
+    /**
+     * 启动时建表并启动发送线程
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        jdbcTemplate.execute(CREATE_TABLE_SQL);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        relayTimer = Timer.builder("ai.detection.outbox.relay.latency")
+                .description("单批发件箱消息的认领、发送和删除耗时")
+                .register(meterRegistry);
+        batchSizeSummary = DistributionSummary.builder("ai.detection.outbox.batch.size")
+                .description("单批认领的发件箱消息数")
+                .register(meterRegistry);
+        sentCounter = Counter.builder("ai.detection.outbox.sent")
+                .description("已确认发送并删除的发件箱消息数")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("ai.detection.outbox.failed")
+                .description("发送失败留待重试的发件箱消息数")
+                .register(meterRegistry);
+
+        running = true;
+        relayThread = new Thread(this::runRelay, "detection-outbox-relay");
+        relayThread.start();
+        log.info("发件箱发送线程已启动: batchSize={}, pollIntervalMs={}", batchSize, pollIntervalMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (relayThread == null) {
+            return;
+        }
+        try {
+            relayThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("发件箱发送线程已停止");
+    }
+
+    private void runRelay() {
+        while (running) {
+            int sent;
+            try {
+                Integer result = transactionTemplate.execute(status -> relayBatch());
+                sent = result != null ? result : 0;
+            } catch (Exception e) {
+                log.error("发件箱发送失败", e);
+                sent = 0;
+            }
+            // 整批发送成功说明可能还有积压，立即继续；否则（含发送失败）等待下一轮
+            if (sent < batchSize) {
+                try {
+                    Thread.sleep(pollIntervalMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 认领、发送并删除一批消息
+     *
+     * @return 发送成功的条数
+     */
+    private int relayBatch() {
+        long start = System.nanoTime();
+        List<Row> rows = jdbcTemplate.query(CLAIM_SQL, (rs, i) -> new Row(rs.getLong("id"), rs.getString("topic"),
+                rs.getString("record_key"), rs.getInt("schema_id"), rs.getBytes("payload")), batchSize);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        List<ListenableFuture<SendResult<String, byte[]>>> futures = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            futures.add(binaryKafkaTemplate.send(RecordPublisher.record(row.topic, row.key, row.schemaId, row.payload)));
+        }
+        // 不等 linger 到期，整批立即发出
+        binaryKafkaTemplate.flush();
+
+        List<Long> sent = new ArrayList<>(rows.size());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        for (int i = 0; i < rows.size(); i++) {
+            try {
+                futures.get(i).get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+                sent.add(rows.get(i).id);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.warn("发件箱消息发送失败，留待重试: id={}, topic={}", rows.get(i).id, rows.get(i).topic, e);
+            }
+        }
+
+        delete(sent);
+        sentCounter.increment(sent.size());
+        failedCounter.increment(rows.size() - sent.size());
+        batchSizeSummary.record(rows.size());
+        relayTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return sent.size();
+    }
+
+    private void delete(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        jdbcTemplate.update("DELETE FROM detection_outbox WHERE id IN (" + placeholders + ")", ids.toArray());
+    }
+
+    private static final class Row {
+
+        private final long id;
+        private final String topic;
+        private final String key;
+        private final int schemaId;
+        private final byte[] payload;
+
+        private Row(long id, String topic, String key, int schemaId, byte[] payload) {
+            this.id = id;
+            this.topic = topic;
+            this.key = key;
+            this.schemaId = schemaId;
+            this.payload = payload;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.smartflow.ai.messaging;
+
+/**
+ * AI检测服务使用的Kafka主题
+ */
+public final class DetectionTopics {
+
+    /**
+     * 检测任务逐帧输出的交通信息
+     */
+    public static final String TRAFFIC_FRAMES = "traffic-data";
+
+    /**
+     * 检测到的事故通知
+     */
+    public static final String ACCIDENT_NOTIFICATIONS = "accident-notifications";
+
+    /**
+     * 接口写入的交通数据记录
+     */
+    public static final String TRAFFIC_DATA = "traffic-data-topic";
+
+    /**
+     * 接口写入的事故检测记录
+     */
+    public static final String ACCIDENT_DETECTION = "accident-detection-topic";
+
+    private DetectionTopics() {
+    }
+}
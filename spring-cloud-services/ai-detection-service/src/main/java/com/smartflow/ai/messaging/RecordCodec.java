@@ -0,0 +1,355 @@
+package com.smartflow.ai.messaging;
+
+import com.smartflow.ai.dto.AccidentDetectionDTO;
+import com.smartflow.ai.dto.TrafficDataDTO;
+import com.smartflow.ai.model.TrafficFrame;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+/**
+ * Kafka消息的紧凑二进制编码
+ * 消息头 schema-id 标识记录格式及版本，没有该消息头的消息按JSON解析；
+ * 整数使用变长编码，速度、流量、置信度按数据库精度（两位小数）存为定点整数，
+ * 时间为毫秒时间戳，和 LocalDateTime 之间按服务器时区转换
+ *
+ * <pre>
+ * 交通样本 v1:
+ *   id+1, cameraId+1 (0表示空), 时间戳,
+ *   person/bicycle/car/motorcycle/bus/truck 依次为 数量, 速度*100,
+ *   流量*100, 拥堵等级(1字节)
+ * 事故通知 v1:
+ *   id+1, 时间戳, 置信度*100,
+ *   severity, status, location, involvedVehicles, description, imageRef
+ *   (字符串为 UTF-8 字节数+1 加内容，0表示空)
+ * 事故通知 v2:
+ *   id+1, cameraId+1 (0表示空), 其余同 v1
+ * </pre>
+ *
+ * 格式只能追加新的 schema-id，已发布的版本不能修改
+ */
+public final class RecordCodec {
+
+    public static final String SCHEMA_HEADER = "schema-id";
+
+    /**
+     * JSON编码，不带 schema-id 消息头
+     */
+    public static final int JSON_SCHEMA = 0;
+    public static final int TRAFFIC_SAMPLE_V1 = 1;
+    public static final int ACCIDENT_NOTIFICATION_V1 = 2;
+    public static final int ACCIDENT_NOTIFICATION_V2 = 3;
+
+    private static final int[] TRAFFIC_CLASSES = {TrafficFrame.PERSON, TrafficFrame.BICYCLE, TrafficFrame.CAR,
+            TrafficFrame.MOTORCYCLE, TrafficFrame.BUS, TrafficFrame.TRUCK};
+
+    private static final byte[][] SCHEMA_HEADER_VALUES = {
+            null,
+            headerValue(TRAFFIC_SAMPLE_V1),
+            headerValue(ACCIDENT_NOTIFICATION_V1),
+            headerValue(ACCIDENT_NOTIFICATION_V2)
+    };
+
+    private static final ThreadLocal<Output> OUTPUT = ThreadLocal.withInitial(Output::new);
+
+    private RecordCodec() {
+    }
+
+    /**
+     * schema-id 消息头的值
+     */
+    public static byte[] schemaHeader(int schemaId) {
+        return SCHEMA_HEADER_VALUES[schemaId];
+    }
+
+    /**
+     * 解析 schema-id 消息头
+     *
+     * @return 无法解析时返回-1
+     */
+    public static int parseSchemaHeader(byte[] value) {
+        if (value == null || value.length == 0) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(new String(value, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 编码检测任务的单帧结果
+     */
+    public static byte[] encode(TrafficFrame frame) {
+        Output out = OUTPUT.get().reset();
+        out.writeNullableId(null);
+        out.writeNullableId(frame.getCameraId());
+        out.writeSignedVarLong(frame.getTimestampMillis());
+        for (int classId : TRAFFIC_CLASSES) {
+            out.writeVarLong(frame.count(classId));
+            out.writeSignedVarLong(toHundredths(frame.speed(classId)));
+        }
+        out.writeSignedVarLong(toHundredths(frame.getTotalVolume()));
+        out.writeByte(frame.getCongestionLevel());
+        return out.toByteArray();
+    }
+
+    /**
+     * 编码交通数据记录，为空的数量和速度按0编码
+     */
+    public static byte[] encode(TrafficDataDTO data) {
+        Output out = OUTPUT.get().reset();
+        out.writeNullableId(data.getId());
+        out.writeNullableId(data.getCameraId());
+        out.writeSignedVarLong(toEpochMillis(data.getDateTime()));
+        writeClass(out, data.getPedestrianCount(), data.getPedestrianSpeed());
+        writeClass(out, data.getBicycleCount(), data.getBicycleSpeed());
+        writeClass(out, data.getCarCount(), data.getCarSpeed());
+        writeClass(out, data.getMotorcycleCount(), data.getMotorcycleSpeed());
+        writeClass(out, data.getBusCount(), data.getBusSpeed());
+        writeClass(out, data.getTruckCount(), data.getTruckSpeed());
+        out.writeSignedVarLong(toHundredths(data.getVolume()));
+        out.writeByte(data.getCongestionLevel() != null ? data.getCongestionLevel() : 0);
+        return out.toByteArray();
+    }
+
+    /**
+     * 编码事故通知（v2），不包含图片数据
+     */
+    public static byte[] encode(AccidentDetectionDTO data) {
+        Output out = OUTPUT.get().reset();
+        out.writeNullableId(data.getId());
+        out.writeNullableId(data.getCameraId());
+        out.writeSignedVarLong(toEpochMillis(data.getDateTime()));
+        out.writeSignedVarLong(toHundredths(data.getConfidenceScore()));
+        out.writeString(data.getSeverity());
+        out.writeString(data.getStatus());
+        out.writeString(data.getLocation());
+        out.writeString(data.getInvolvedVehicles());
+        out.writeString(data.getDescription());
+        out.writeString(data.getImageRef());
+        return out.toByteArray();
+    }
+
+    /**
+     * 解码交通样本
+     *
+     * @throws IllegalArgumentException 格式错误或版本不支持
+     */
+    public static TrafficDataDTO decodeTrafficSample(int schemaId, byte[] payload) {
+        if (schemaId != TRAFFIC_SAMPLE_V1) {
+            throw new IllegalArgumentException("不支持的交通样本格式: " + schemaId);
+        }
+        Input in = new Input(payload);
+        TrafficDataDTO data = new TrafficDataDTO();
+        data.setId(in.readNullableId());
+        data.setCameraId(in.readNullableId());
+        data.setDateTime(fromEpochMillis(in.readSignedVarLong()));
+        data.setPedestrianCount(in.readCount());
+        data.setPedestrianSpeed(in.readHundredths());
+        data.setBicycleCount(in.readCount());
+        data.setBicycleSpeed(in.readHundredths());
+        data.setCarCount(in.readCount());
+        data.setCarSpeed(in.readHundredths());
+        data.setMotorcycleCount(in.readCount());
+        data.setMotorcycleSpeed(in.readHundredths());
+        data.setBusCount(in.readCount());
+        data.setBusSpeed(in.readHundredths());
+        data.setTruckCount(in.readCount());
+        data.setTruckSpeed(in.readHundredths());
+        data.setVolume(in.readHundredths());
+        data.setCongestionLevel(in.readByte());
+        in.expectEnd();
+        return data;
+    }
+
+    /**
+     * 解码事故通知
+     *
+     * @throws IllegalArgumentException 格式错误或版本不支持
+     */
+    public static AccidentDetectionDTO decodeAccidentNotification(int schemaId, byte[] payload) {
+        if (schemaId != ACCIDENT_NOTIFICATION_V1 && schemaId != ACCIDENT_NOTIFICATION_V2) {
+            throw new IllegalArgumentException("不支持的事故通知格式: " + schemaId);
+        }
+        Input in = new Input(payload);
+        AccidentDetectionDTO data = new AccidentDetectionDTO();
+        data.setId(in.readNullableId());
+        if (schemaId == ACCIDENT_NOTIFICATION_V2) {
+            data.setCameraId(in.readNullableId());
+        }
+        data.setDateTime(fromEpochMillis(in.readSignedVarLong()));
+        data.setConfidenceScore(in.readHundredths());
+        data.setSeverity(in.readString());
+        data.setStatus(in.readString());
+        data.setLocation(in.readString());
+        data.setInvolvedVehicles(in.readString());
+        data.setDescription(in.readString());
+        data.setImageRef(in.readString());
+        in.expectEnd();
+        return data;
+    }
+
+    private static void writeClass(Output out, Integer count, BigDecimal speed) {
+        out.writeVarLong(count != null ? count : 0);
+        out.writeSignedVarLong(toHundredths(speed));
+    }
+
+    private static long toHundredths(double value) {
+        return Math.round(value * 100);
+    }
+
+    private static long toHundredths(BigDecimal value) {
+        return value != null ? value.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue() : 0L;
+    }
+
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        if (dateTime == null) {
+            throw new IllegalArgumentException("时间不能为空");
+        }
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime fromEpochMillis(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    private static byte[] headerValue(int schemaId) {
+        return Integer.toString(schemaId).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * 可复用的写缓冲区，每个线程一个
+     */
+    private static final class Output {
+
+        private byte[] buf = new byte[256];
+        private int pos;
+
+        private Output reset() {
+            pos = 0;
+            return this;
+        }
+
+        private void ensure(int extra) {
+            if (pos + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + extra));
+            }
+        }
+
+        private void writeByte(int value) {
+            ensure(1);
+            buf[pos++] = (byte) value;
+        }
+
+        private void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[pos++] = (byte) value;
+        }
+
+        private void writeSignedVarLong(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        private void writeNullableId(Long id) {
+            writeVarLong(id != null ? id + 1 : 0);
+        }
+
+        private void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+    }
+
+    private static final class Input {
+
+        private final byte[] buf;
+        private int pos;
+
+        private Input(byte[] buf) {
+            this.buf = buf;
+        }
+
+        private int readByte() {
+            if (pos >= buf.length) {
+                throw new IllegalArgumentException("消息长度不足");
+            }
+            return buf[pos++] & 0xFF;
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("变长整数格式错误");
+        }
+
+        private long readSignedVarLong() {
+            long raw = readVarLong();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        private Long readNullableId() {
+            long raw = readVarLong();
+            return raw == 0 ? null : raw - 1;
+        }
+
+        private int readCount() {
+            long count = readVarLong();
+            if (count > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("数量超出范围: " + count);
+            }
+            return (int) count;
+        }
+
+        private BigDecimal readHundredths() {
+            return BigDecimal.valueOf(readSignedVarLong(), 2);
+        }
+
+        private String readString() {
+            long raw = readVarLong();
+            if (raw == 0) {
+                return null;
+            }
+            long length = raw - 1;
+            if (length > buf.length - pos) {
+                throw new IllegalArgumentException("消息长度不足");
+            }
+            String value = new String(buf, pos, (int) length, StandardCharsets.UTF_8);
+            pos += (int) length;
+            return value;
+        }
+
+        private void expectEnd() {
+            if (pos != buf.length) {
+                throw new IllegalArgumentException("消息末尾有多余数据");
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.smartflow.ai.messaging;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartflow.ai.dto.AccidentDetectionDTO;
+import com.smartflow.ai.dto.TrafficDataDTO;
+import com.smartflow.ai.model.TrafficFrame;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 检测记录的Kafka发布
+ * 逐帧结果直接发送；和数据库记录对应的消息写入发件箱，事务提交后由 DetectionOutbox 批量发送；
+ * 默认以 RecordCodec 二进制格式发送并带 schema-id 消息头；
+ * 配置在 json-topics 中的主题仍发送JSON（无 schema-id 消息头），供尚未升级的消费者使用
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RecordPublisher {
+
+    private final KafkaTemplate<String, byte[]> binaryKafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final DetectionOutbox detectionOutbox;
+
+    @Value("${ai.detection.kafka.json-topics:}")
+    private String[] jsonTopicList;
+
+    private final Set<String> jsonTopics = new HashSet<>();
+
+    @PostConstruct
+    public void init() {
+        for (String topic : jsonTopicList) {
+            if (!topic.trim().isEmpty()) {
+                jsonTopics.add(topic.trim());
+            }
+        }
+        if (!jsonTopics.isEmpty()) {
+            log.info("以下主题仍按JSON发送: {}", jsonTopics);
+        }
+    }
+
+    /**
+     * 发布检测任务的单帧结果
+     */
+    public void publish(String topic, String key, TrafficFrame frame) {
+        if (jsonTopics.contains(topic)) {
+            send(topic, key, RecordCodec.JSON_SCHEMA, toJson(topic, frame));
+        } else {
+            send(topic, key, RecordCodec.TRAFFIC_SAMPLE_V1, RecordCodec.encode(frame));
+        }
+    }
+
+    /**
+     * 把交通数据记录写入发件箱，随当前事务提交，由 DetectionOutbox 发送
+     */
+    public void stage(String topic, String key, TrafficDataDTO data) {
+        if (jsonTopics.contains(topic)) {
+            detectionOutbox.append(topic, key, RecordCodec.JSON_SCHEMA, toJson(topic, data));
+        } else {
+            detectionOutbox.append(topic, key, RecordCodec.TRAFFIC_SAMPLE_V1, RecordCodec.encode(data));
+        }
+    }
+
+    /**
+     * 把事故记录写入发件箱，随当前事务提交，由 DetectionOutbox 发送；图片只以引用发送
+     */
+    public void stage(String topic, String key, AccidentDetectionDTO data) {
+        if (jsonTopics.contains(topic)) {
+            detectionOutbox.append(topic, key, RecordCodec.JSON_SCHEMA, toJson(topic, data));
+        } else {
+            detectionOutbox.append(topic, key, RecordCodec.ACCIDENT_NOTIFICATION_V2, RecordCodec.encode(data));
+        }
+    }
+
+    /**
+     * 构造Kafka消息，二进制格式带 schema-id 消息头
+     */
+    static ProducerRecord<String, byte[]> record(String topic, String key, int schemaId, byte[] payload) {
+        RecordHeaders headers = new RecordHeaders();
+        if (schemaId != RecordCodec.JSON_SCHEMA) {
+            headers.add(RecordCodec.SCHEMA_HEADER, RecordCodec.schemaHeader(schemaId));
+        }
+        return new ProducerRecord<>(topic, null, key, payload, headers);
+    }
+
+    private void send(String topic, String key, int schemaId, byte[] payload) {
+        binaryKafkaTemplate.send(record(topic, key, schemaId, payload));
+    }
+
+    private byte[] toJson(String topic, Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("消息序列化失败: " + topic, e);
+        }
+    }
+}
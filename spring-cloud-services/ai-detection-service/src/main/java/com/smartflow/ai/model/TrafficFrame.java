@@ -0,0 +1,175 @@
+package com.smartflow.ai.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.smartflow.ai.dto.TrafficInfoDto;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 单帧交通检测结果的定长基本类型表示
+ * 各类目标的数量和速度按检测模型的类别ID存放在数组中，检测任务可复用同一实例，
+ * 逐帧处理不分配对象；JSON序列化结果与 TrafficInfoDto 相同
+ */
+@JsonSerialize(using = TrafficFrame.Serializer.class)
+public final class TrafficFrame {
+
+    public static final int PERSON = 0;
+    public static final int BICYCLE = 1;
+    public static final int CAR = 2;
+    public static final int MOTORCYCLE = 3;
+    public static final int BUS = 5;
+    public static final int TRUCK = 7;
+
+    /**
+     * 参与统计的类别ID
+     */
+    public static final int[] CLASS_IDS = {PERSON, BICYCLE, CAR, MOTORCYCLE, BUS, TRUCK};
+
+    /**
+     * 类别ID到类别名称，未参与统计的ID为null
+     */
+    private static final String[] CLASS_NAMES = new String[TRUCK + 1];
+
+    private static final String[] CONGESTION_LEVELS = {"Low", "Medium", "High"};
+
+    static {
+        CLASS_NAMES[PERSON] = "person";
+        CLASS_NAMES[BICYCLE] = "bicycle";
+        CLASS_NAMES[CAR] = "car";
+        CLASS_NAMES[MOTORCYCLE] = "motorcycle";
+        CLASS_NAMES[BUS] = "bus";
+        CLASS_NAMES[TRUCK] = "truck";
+    }
+
+    private final int[] counts = new int[CLASS_NAMES.length];
+    private final double[] speeds = new double[CLASS_NAMES.length];
+    private Long cameraId;
+    private long timestampMillis;
+    private double totalVolume;
+    private int congestionLevel;
+
+    public static String className(int classId) {
+        return CLASS_NAMES[classId];
+    }
+
+    public static String congestionLevelText(int level) {
+        return CONGESTION_LEVELS[level];
+    }
+
+    /**
+     * 按总流量计算拥堵等级：0=Low, 1=Medium, 2=High
+     */
+    public static int congestionLevel(double volume) {
+        if (volume < 100) return 0;
+        if (volume < 200) return 1;
+        return 2;
+    }
+
+    /**
+     * 清空结果以便复用
+     */
+    public void reset(Long cameraId, long timestampMillis) {
+        this.cameraId = cameraId;
+        this.timestampMillis = timestampMillis;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+            speeds[i] = 0.0;
+        }
+        totalVolume = 0.0;
+        congestionLevel = 0;
+    }
+
+    public void set(int classId, int count, double speed) {
+        counts[classId] = count;
+        speeds[classId] = speed;
+    }
+
+    /**
+     * 由各类数量和速度计算总流量和拥堵等级
+     */
+    public void computeTotals() {
+        double volume = 0.0;
+        for (int classId : CLASS_IDS) {
+            volume += counts[classId] * speeds[classId];
+        }
+        totalVolume = volume;
+        congestionLevel = congestionLevel(volume);
+    }
+
+    public int count(int classId) {
+        return counts[classId];
+    }
+
+    public double speed(int classId) {
+        return speeds[classId];
+    }
+
+    public Long getCameraId() {
+        return cameraId;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public double getTotalVolume() {
+        return totalVolume;
+    }
+
+    public int getCongestionLevel() {
+        return congestionLevel;
+    }
+
+    /**
+     * 复制一份，用于交给异步写入队列
+     */
+    public TrafficFrame copy() {
+        TrafficFrame copy = new TrafficFrame();
+        System.arraycopy(counts, 0, copy.counts, 0, counts.length);
+        System.arraycopy(speeds, 0, copy.speeds, 0, speeds.length);
+        copy.cameraId = cameraId;
+        copy.timestampMillis = timestampMillis;
+        copy.totalVolume = totalVolume;
+        copy.congestionLevel = congestionLevel;
+        return copy;
+    }
+
+    /**
+     * 转换为接口返回使用的DTO
+     */
+    public TrafficInfoDto toDto() {
+        Map<String, TrafficInfoDto.VehicleInfo> vehicles = new HashMap<>();
+        for (int classId : CLASS_IDS) {
+            vehicles.put(CLASS_NAMES[classId], new TrafficInfoDto.VehicleInfo(counts[classId], speeds[classId]));
+        }
+        return new TrafficInfoDto(vehicles, totalVolume, congestionLevel, CONGESTION_LEVELS[congestionLevel]);
+    }
+
+    /**
+     * 直接按 TrafficInfoDto 的结构输出JSON，不经过中间Map
+     */
+    public static class Serializer extends JsonSerializer<TrafficFrame> {
+
+        @Override
+        public void serialize(TrafficFrame frame, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            gen.writeObjectFieldStart("vehicles");
+            for (int classId : CLASS_IDS) {
+                gen.writeObjectFieldStart(CLASS_NAMES[classId]);
+                gen.writeNumberField("count", frame.counts[classId]);
+                gen.writeNumberField("averageSpeed", frame.speeds[classId]);
+                gen.writeEndObject();
+            }
+            gen.writeEndObject();
+            gen.writeNumberField("totalVolume", frame.totalVolume);
+            gen.writeNumberField("congestionLevel", frame.congestionLevel);
+            gen.writeStringField("congestionLevelText", CONGESTION_LEVELS[frame.congestionLevel]);
+            gen.writeEndObject();
+        }
+    }
+}
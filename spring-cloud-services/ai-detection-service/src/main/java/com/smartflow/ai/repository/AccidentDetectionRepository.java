@@ -1,11 +1,14 @@
 package com.smartflow.ai.repository;
 
+import com.smartflow.ai.dto.AccidentSummaryDTO;
 import com.smartflow.ai.entity.AccidentDetection;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -16,25 +19,56 @@ import java.util.List;
 public interface AccidentDetectionRepository extends JpaRepository<AccidentDetection, Long> {
     
     /**
-     * 根据时间范围查询事故检测数据
+     * 查询指定时间之后的事故检测数据
      */
-    List<AccidentDetection> findByDateTimeBetweenOrderByDateTimeDesc(LocalDateTime startTime, LocalDateTime endTime);
+    List<AccidentDetection> findByDateTimeAfter(LocalDateTime startTime);
     
     /**
-     * 根据状态查询事故检测数据
+     * 根据时间范围查询事故检测摘要
      */
-    List<AccidentDetection> findByStatusOrderByDateTimeDesc(AccidentDetection.Status status);
+    @Query("SELECT new com.smartflow.ai.dto.AccidentSummaryDTO(a.id, a.dateTime, a.involvedVehicles, " +
+            "a.confidenceScore, a.severity, a.status, a.location) FROM AccidentDetection a " +
+            "WHERE a.dateTime BETWEEN :startTime AND :endTime AND a.id < :beforeId ORDER BY a.id DESC")
+    List<AccidentSummaryDTO> findSummariesByTimeRange(@Param("startTime") LocalDateTime startTime,
+                                                     @Param("endTime") LocalDateTime endTime,
+                                                     @Param("beforeId") Long beforeId,
+                                                     Pageable pageable);
     
     /**
-     * 根据严重程度查询事故检测数据
+     * 根据状态查询事故检测摘要
      */
-    List<AccidentDetection> findBySeverityOrderByDateTimeDesc(AccidentDetection.Severity severity);
+    @Query("SELECT new com.smartflow.ai.dto.AccidentSummaryDTO(a.id, a.dateTime, a.involvedVehicles, " +
+            "a.confidenceScore, a.severity, a.status, a.location) FROM AccidentDetection a " +
+            "WHERE a.status = :status AND a.id < :beforeId ORDER BY a.id DESC")
+    List<AccidentSummaryDTO> findSummariesByStatus(@Param("status") AccidentDetection.Status status,
+                                                  @Param("beforeId") Long beforeId,
+                                                  Pageable pageable);
     
     /**
-     * 查询高置信度的事故检测数据
+     * 根据严重程度查询事故检测摘要
      */
-    @Query("SELECT a FROM AccidentDetection a WHERE a.confidenceScore >= :threshold ORDER BY a.dateTime DESC")
-    List<AccidentDetection> findHighConfidenceAccidents(@Param("threshold") Double threshold);
+    @Query("SELECT new com.smartflow.ai.dto.AccidentSummaryDTO(a.id, a.dateTime, a.involvedVehicles, " +
+            "a.confidenceScore, a.severity, a.status, a.location) FROM AccidentDetection a " +
+            "WHERE a.severity = :severity AND a.id < :beforeId ORDER BY a.id DESC")
+    List<AccidentSummaryDTO> findSummariesBySeverity(@Param("severity") AccidentDetection.Severity severity,
+                                                    @Param("beforeId") Long beforeId,
+                                                    Pageable pageable);
+    
+    /**
+     * 查询高置信度的事故检测摘要
+     */
+    @Query("SELECT new com.smartflow.ai.dto.AccidentSummaryDTO(a.id, a.dateTime, a.involvedVehicles, " +
+            "a.confidenceScore, a.severity, a.status, a.location) FROM AccidentDetection a " +
+            "WHERE a.confidenceScore >= :threshold AND a.id < :beforeId ORDER BY a.id DESC")
+    List<AccidentSummaryDTO> findHighConfidenceSummaries(@Param("threshold") BigDecimal threshold,
+                                                        @Param("beforeId") Long beforeId,
+                                                        Pageable pageable);
+    
+    /**
+     * 只查询图片引用，不加载整行
+     */
+    @Query("SELECT a.imageRef FROM AccidentDetection a WHERE a.id = :id")
+    String findImageRefById(@Param("id") Long id);
     
     /**
      * 统计指定时间范围内的事故数量
@@ -44,8 +78,10 @@ public interface AccidentDetectionRepository extends JpaRepository<AccidentDetec
                                   @Param("endTime") LocalDateTime endTime);
     
     /**
-     * 查询待处理的事故检测数据
+     * 查询待处理的事故检测摘要
      */
-    @Query("SELECT a FROM AccidentDetection a WHERE a.status IN ('PENDING', 'INVESTIGATING') ORDER BY a.dateTime DESC")
-    List<AccidentDetection> findPendingAccidents();
+    @Query("SELECT new com.smartflow.ai.dto.AccidentSummaryDTO(a.id, a.dateTime, a.involvedVehicles, " +
+            "a.confidenceScore, a.severity, a.status, a.location) FROM AccidentDetection a " +
+            "WHERE a.status IN ('PENDING', 'INVESTIGATING') AND a.id < :beforeId ORDER BY a.id DESC")
+    List<AccidentSummaryDTO> findPendingSummaries(@Param("beforeId") Long beforeId, Pageable pageable);
 }
\ No newline at end of file
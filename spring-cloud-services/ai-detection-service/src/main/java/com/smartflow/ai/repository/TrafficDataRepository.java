@@ -1,35 +1,70 @@
 package com.smartflow.ai.repository;
 
+import com.smartflow.ai.dto.TrafficSummaryDTO;
 import com.smartflow.ai.entity.TrafficData;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * 交通数据Repository接口
+ * traffic_data 按天分区（见 TrafficPartitionManager），带 dateTime 范围条件的查询只扫描对应分区
  */
 @Repository
 public interface TrafficDataRepository extends JpaRepository<TrafficData, Long> {
     
     /**
-     * 根据时间范围查询交通数据
+     * 查询指定时间之后的交通数据，按ID降序分页，beforeId 为上一页最后一条的ID
      */
-    List<TrafficData> findByDateTimeBetweenOrderByDateTimeDesc(LocalDateTime startTime, LocalDateTime endTime);
+    List<TrafficData> findByDateTimeAfterAndIdLessThanOrderByIdDesc(LocalDateTime startTime, Long beforeId,
+                                                                    Pageable pageable);
     
     /**
-     * 查询最新的交通数据
+     * 根据时间范围查询交通数据摘要
      */
-    @Query("SELECT t FROM TrafficData t ORDER BY t.dateTime DESC")
-    List<TrafficData> findLatestTrafficData();
+    @Query("SELECT new com.smartflow.ai.dto.TrafficSummaryDTO(t.id, t.dateTime, t.pedestrianCount, t.carCount, " +
+            "t.bicycleCount, t.busCount, t.motorcycleCount, t.truckCount, t.volume, t.congestionLevel) FROM TrafficData t " +
+            "WHERE t.dateTime BETWEEN :startTime AND :endTime AND t.id < :beforeId ORDER BY t.id DESC")
+    List<TrafficSummaryDTO> findSummariesByTimeRange(@Param("startTime") LocalDateTime startTime,
+                                                    @Param("endTime") LocalDateTime endTime,
+                                                    @Param("beforeId") Long beforeId,
+                                                    Pageable pageable);
     
     /**
-     * 根据拥堵级别查询交通数据
+     * 查询最新的交通数据摘要
      */
-    List<TrafficData> findByCongestionLevelOrderByDateTimeDesc(Integer congestionLevel);
+    @Query("SELECT new com.smartflow.ai.dto.TrafficSummaryDTO(t.id, t.dateTime, t.pedestrianCount, t.carCount, " +
+            "t.bicycleCount, t.busCount, t.motorcycleCount, t.truckCount, t.volume, t.congestionLevel) FROM TrafficData t " +
+            "WHERE t.id < :beforeId ORDER BY t.id DESC")
+    List<TrafficSummaryDTO> findLatestSummaries(@Param("beforeId") Long beforeId, Pageable pageable);
+    
+    /**
+     * 根据拥堵级别查询交通数据摘要
+     */
+    @Query("SELECT new com.smartflow.ai.dto.TrafficSummaryDTO(t.id, t.dateTime, t.pedestrianCount, t.carCount, " +
+            "t.bicycleCount, t.busCount, t.motorcycleCount, t.truckCount, t.volume, t.congestionLevel) FROM TrafficData t " +
+            "WHERE t.congestionLevel = :congestionLevel AND t.id < :beforeId ORDER BY t.id DESC")
+    List<TrafficSummaryDTO> findSummariesByCongestionLevel(@Param("congestionLevel") Integer congestionLevel,
+                                                          @Param("beforeId") Long beforeId,
+                                                          Pageable pageable);
+    
+    /**
+     * 流式读取时间范围内的交通数据，按ID升序，afterId 为续传游标
+     * 需在只读事务中消费并关闭，配合 useCursorFetch 以服务端游标分批拉取
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("SELECT t FROM TrafficData t WHERE t.dateTime BETWEEN :startTime AND :endTime AND t.id > :afterId ORDER BY t.id ASC")
+    Stream<TrafficData> streamByTimeRange(@Param("startTime") LocalDateTime startTime,
+                                          @Param("endTime") LocalDateTime endTime,
+                                          @Param("afterId") Long afterId);
     
     /**
      * 统计指定时间范围内的平均交通量
@@ -0,0 +1,141 @@
+package com.smartflow.ai.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * 按摄像头（或位置）划分的事故冷却表
+ * 时间戳使用毫秒级long，通过CAS更新，无锁；已存在的摄像头检查冷却时不分配对象
+ */
+@Slf4j
+@Component
+public class AccidentCooldownTable {
+
+    @Value("${ai.detection.accident-cooldown:900}")
+    private int defaultCooldownSeconds;
+
+    @Value("${ai.detection.cooldown.idle-timeout-ms:3600000}")
+    private long idleTimeoutMs;
+
+    private final Map<Object, Slot> slots = new ConcurrentHashMap<>();
+
+    /**
+     * 为摄像头设置专用冷却时间，注册的摄像头不会被空闲清理
+     */
+    public void register(Object key, long cooldownMs) {
+        Slot slot = slotFor(key);
+        slot.cooldownMs = cooldownMs;
+        slot.pinned = true;
+    }
+
+    /**
+     * 取消注册，之后按普通空闲摄像头处理
+     */
+    public void unregister(Object key) {
+        Slot slot = slots.get(key);
+        if (slot != null) {
+            slot.pinned = false;
+        }
+    }
+
+    /**
+     * 是否仍处于冷却期
+     */
+    public boolean isCoolingDown(Object key, long nowMillis) {
+        Slot slot = slotFor(key);
+        slot.lastSeenMillis = nowMillis;
+        return nowMillis < slot.nextAllowedMillis;
+    }
+
+    /**
+     * 记录一次事故并开始冷却
+     * 并发调用时只有一个调用方成功，其余调用方的事故应丢弃
+     *
+     * @return 是否成功占用本次冷却窗口
+     */
+    public boolean tryStartCooldown(Object key, long nowMillis) {
+        Slot slot = slotFor(key);
+        slot.lastSeenMillis = nowMillis;
+        long next;
+        do {
+            next = slot.nextAllowedMillis;
+            if (nowMillis < next) {
+                return false;
+            }
+        } while (!NEXT_ALLOWED.compareAndSet(slot, next, nowMillis + slot.cooldownMs));
+        return true;
+    }
+
+    /**
+     * 撤销 {@link #tryStartCooldown} 占用的冷却窗口，用于事故记录未能保存的情况
+     * 冷却期已被之后的调用重新占用时不做修改
+     *
+     * @param startedMillis 占用冷却窗口时传入的时间
+     */
+    public void cancelCooldown(Object key, long startedMillis) {
+        Slot slot = slots.get(key);
+        if (slot != null) {
+            NEXT_ALLOWED.compareAndSet(slot, startedMillis + slot.cooldownMs, startedMillis);
+        }
+    }
+
+    /**
+     * 当前跟踪的摄像头数量
+     */
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * 定期清理长时间无检测且已过冷却期的摄像头
+     */
+    @Scheduled(fixedDelayString = "${ai.detection.cooldown.sweep-interval-ms:300000}")
+    public void sweepIdle() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        for (Map.Entry<Object, Slot> entry : slots.entrySet()) {
+            Slot slot = entry.getValue();
+            // 只移除检查时的那个槽位，期间被替换的槽位保留
+            if (!slot.pinned && now >= slot.nextAllowedMillis && now - slot.lastSeenMillis > idleTimeoutMs
+                    && slots.remove(entry.getKey(), slot)) {
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            log.debug("Swept {} idle accident cooldown slots, {} remaining", removed, slots.size());
+        }
+    }
+
+    private Slot slotFor(Object key) {
+        Slot slot = slots.get(key);
+        if (slot == null) {
+            slot = slots.computeIfAbsent(key, k -> new Slot(TimeUnit.SECONDS.toMillis(defaultCooldownSeconds)));
+        }
+        return slot;
+    }
+
+    private static final AtomicLongFieldUpdater<Slot> NEXT_ALLOWED =
+            AtomicLongFieldUpdater.newUpdater(Slot.class, "nextAllowedMillis");
+
+    /**
+     * 单个摄像头的冷却状态
+     */
+    private static final class Slot {
+
+        private volatile long nextAllowedMillis;
+        private volatile long lastSeenMillis;
+        private volatile long cooldownMs;
+        private volatile boolean pinned;
+
+        private Slot(long cooldownMs) {
+            this.cooldownMs = cooldownMs;
+        }
+    }
+}
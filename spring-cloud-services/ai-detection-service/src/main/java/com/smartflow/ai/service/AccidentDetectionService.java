@@ -1,21 +1,25 @@
 package com.smartflow.ai.service;
 
 import com.smartflow.ai.dto.AccidentDetectionDTO;
+import com.smartflow.ai.dto.AccidentSummaryDTO;
 import com.smartflow.ai.entity.AccidentDetection;
+import com.smartflow.ai.exception.BadRequestException;
+import com.smartflow.ai.mapper.AccidentDetectionMapper;
+import com.smartflow.ai.messaging.DetectionTopics;
+import com.smartflow.ai.messaging.RecordPublisher;
 import com.smartflow.ai.repository.AccidentDetectionRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.BeanUtils;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 /**
  * 事故检测服务类
@@ -26,11 +30,22 @@ import java.util.stream.Collectors;
 public class AccidentDetectionService {
     
     private final AccidentDetectionRepository accidentDetectionRepository;
-    private final RedisTemplate<String, Object> redisTemplate;
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final FrameStore frameStore;
+    private final KeysetPaging keysetPaging;
+    private final TieredCache tieredCache;
+    private final RecordPublisher recordPublisher;
+    private final AccidentDetectionMapper accidentDetectionMapper;
     
     private static final String REDIS_KEY_PREFIX = "accident:detection:";
-    private static final String KAFKA_TOPIC = "accident-detection-topic";
+    private static final String KAFKA_TOPIC = DetectionTopics.ACCIDENT_DETECTION;
+    
+    private TieredCache.Region<AccidentDetection, AccidentDetectionDTO> cache;
+    
+    @PostConstruct
+    public void initCache() {
+        cache = tieredCache.region("accident-detection", REDIS_KEY_PREFIX, Duration.ofHours(2),
+                accidentDetectionRepository::findById, accidentDetectionMapper::toDto);
+    }
     
     /**
      * 保存事故检测数据
@@ -39,118 +54,91 @@ public class AccidentDetectionService {
     public AccidentDetectionDTO saveAccidentDetection(AccidentDetectionDTO accidentDetectionDTO) {
         log.info("保存事故检测数据: {}", accidentDetectionDTO);
         
-        AccidentDetection accidentDetection = new AccidentDetection();
-        BeanUtils.copyProperties(accidentDetectionDTO, accidentDetection);
+        AccidentDetection accidentDetection = accidentDetectionMapper.toEntity(accidentDetectionDTO);
         
         // 处理图片数据
         if (accidentDetectionDTO.getImageData() != null) {
             try {
                 byte[] imageBytes = Base64.getDecoder().decode(accidentDetectionDTO.getImageData());
-                accidentDetection.setImageData(imageBytes);
-            } catch (Exception e) {
+                accidentDetection.setImageRef(frameStore.put(imageBytes));
+            } catch (IllegalArgumentException e) {
                 log.error("图片数据解码失败", e);
                 throw new RuntimeException("图片数据格式错误");
             }
         }
         
-        // 设置严重程度和状态
-        if (accidentDetectionDTO.getSeverity() != null) {
-            accidentDetection.setSeverity(AccidentDetection.Severity.valueOf(accidentDetectionDTO.getSeverity()));
-        }
-        if (accidentDetectionDTO.getStatus() != null) {
-            accidentDetection.setStatus(AccidentDetection.Status.valueOf(accidentDetectionDTO.getStatus()));
-        }
-        
         AccidentDetection savedData = accidentDetectionRepository.save(accidentDetection);
         
-        // 缓存到Redis
-        String redisKey = REDIS_KEY_PREFIX + savedData.getId();
-        redisTemplate.opsForValue().set(redisKey, savedData, 2, TimeUnit.HOURS);
+        // 缓存到本地和Redis
+        cache.put(savedData.getId(), savedData);
         
-        // 发送到Kafka
-        try {
-            kafkaTemplate.send(KAFKA_TOPIC, "accident-detection", convertToJson(savedData));
-            log.info("事故检测数据已发送到Kafka主题: {}", KAFKA_TOPIC);
-        } catch (Exception e) {
-            log.error("发送事故检测数据到Kafka失败", e);
-        }
+        AccidentDetectionDTO result = accidentDetectionMapper.toDto(savedData);
+        
+        // 写入发件箱，随事务提交后发送到Kafka
+        recordPublisher.stage(KAFKA_TOPIC, String.valueOf(savedData.getId()), result);
         
-        return convertToDTO(savedData);
+        return result;
     }
     
     /**
      * 根据ID查询事故检测数据
      */
     public AccidentDetectionDTO getAccidentDetectionById(Long id) {
-        // 先从Redis缓存中获取
-        String redisKey = REDIS_KEY_PREFIX + id;
-        AccidentDetection cachedData = (AccidentDetection) redisTemplate.opsForValue().get(redisKey);
-        
-        if (cachedData != null) {
-            log.debug("从Redis缓存获取事故检测数据: {}", id);
-            return convertToDTO(cachedData);
+        // 依次从本地缓存、Redis、数据库获取
+        AccidentDetectionDTO data = cache.get(id);
+        if (data == null) {
+            throw new RuntimeException("事故检测数据不存在: " + id);
         }
-        
-        // 从数据库查询
-        AccidentDetection accidentDetection = accidentDetectionRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("事故检测数据不存在: " + id));
-        
-        // 缓存到Redis
-        redisTemplate.opsForValue().set(redisKey, accidentDetection, 2, TimeUnit.HOURS);
-        
-        return convertToDTO(accidentDetection);
+        return data;
     }
     
     /**
      * 根据时间范围查询事故检测数据
      */
-    public List<AccidentDetectionDTO> getAccidentDetectionByTimeRange(LocalDateTime startTime, LocalDateTime endTime) {
-        List<AccidentDetection> accidentDetectionList = accidentDetectionRepository.findByDateTimeBetweenOrderByDateTimeDesc(startTime, endTime);
-        return accidentDetectionList.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public List<AccidentSummaryDTO> getAccidentDetectionByTimeRange(LocalDateTime startTime, LocalDateTime endTime,
+                                                                    Long beforeId, Integer size) {
+        return accidentDetectionRepository.findSummariesByTimeRange(startTime, endTime,
+                KeysetPaging.cursor(beforeId), keysetPaging.limit(size));
     }
     
     /**
      * 根据状态查询事故检测数据
      */
-    public List<AccidentDetectionDTO> getAccidentDetectionByStatus(String status) {
+    public List<AccidentSummaryDTO> getAccidentDetectionByStatus(String status, Long beforeId, Integer size) {
         AccidentDetection.Status statusEnum = AccidentDetection.Status.valueOf(status);
-        List<AccidentDetection> accidentDetectionList = accidentDetectionRepository.findByStatusOrderByDateTimeDesc(statusEnum);
-        return accidentDetectionList.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return accidentDetectionRepository.findSummariesByStatus(statusEnum,
+                KeysetPaging.cursor(beforeId), keysetPaging.limit(size));
     }
     
     /**
      * 根据严重程度查询事故检测数据
      */
-    public List<AccidentDetectionDTO> getAccidentDetectionBySeverity(String severity) {
+    public List<AccidentSummaryDTO> getAccidentDetectionBySeverity(String severity, Long beforeId, Integer size) {
         AccidentDetection.Severity severityEnum = AccidentDetection.Severity.valueOf(severity);
-        List<AccidentDetection> accidentDetectionList = accidentDetectionRepository.findBySeverityOrderByDateTimeDesc(severityEnum);
-        return accidentDetectionList.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return accidentDetectionRepository.findSummariesBySeverity(severityEnum,
+                KeysetPaging.cursor(beforeId), keysetPaging.limit(size));
     }
     
     /**
      * 查询高置信度的事故检测数据
      */
-    public List<AccidentDetectionDTO> getHighConfidenceAccidents(Double threshold) {
-        List<AccidentDetection> accidentDetectionList = accidentDetectionRepository.findHighConfidenceAccidents(threshold);
-        return accidentDetectionList.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public List<AccidentSummaryDTO> getHighConfidenceAccidents(Double threshold, Long beforeId, Integer size) {
+        return accidentDetectionRepository.findHighConfidenceSummaries(BigDecimal.valueOf(threshold),
+                KeysetPaging.cursor(beforeId), keysetPaging.limit(size));
     }
     
     /**
      * 查询待处理的事故检测数据
      */
-    public List<AccidentDetectionDTO> getPendingAccidents() {
-        List<AccidentDetection> accidentDetectionList = accidentDetectionRepository.findPendingAccidents();
-        return accidentDetectionList.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public List<AccidentSummaryDTO> getPendingAccidents(Long beforeId, Integer size) {
+        return accidentDetectionRepository.findPendingSummaries(KeysetPaging.cursor(beforeId), keysetPaging.limit(size));
+    }
+    
+    /**
+     * 获取事故图片引用
+     */
+    public String getImageRef(Long id) {
+        return accidentDetectionRepository.findImageRefById(id);
     }
     
     /**
@@ -168,14 +156,28 @@ public class AccidentDetectionService {
         AccidentDetection accidentDetection = accidentDetectionRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("事故检测数据不存在: " + id));
         
-        accidentDetection.setStatus(AccidentDetection.Status.valueOf(status));
+        accidentDetection.setStatus(parseStatus(status));
         AccidentDetection updatedData = accidentDetectionRepository.save(accidentDetection);
         
-        // 更新Redis缓存
-        String redisKey = REDIS_KEY_PREFIX + id;
-        redisTemplate.opsForValue().set(redisKey, updatedData, 2, TimeUnit.HOURS);
+        // 更新本地和Redis缓存，并通知其他实例清除旧值
+        cache.update(id, updatedData);
         
-        return convertToDTO(updatedData);
+        return accidentDetectionMapper.toDto(updatedData);
+    }
+    
+    /**
+     * 状态名不区分大小写，未知状态按请求错误处理
+     */
+    private static AccidentDetection.Status parseStatus(String status) {
+        if (status != null) {
+            for (AccidentDetection.Status value : AccidentDetection.Status.values()) {
+                if (value.name().equalsIgnoreCase(status.trim())) {
+                    return value;
+                }
+            }
+        }
+        throw new BadRequestException("不支持的事故状态: " + status
+                + "，可选 " + Arrays.toString(AccidentDetection.Status.values()));
     }
     
     /**
@@ -185,48 +187,9 @@ public class AccidentDetectionService {
     public void deleteAccidentDetection(Long id) {
         accidentDetectionRepository.deleteById(id);
         
-        // 从Redis缓存中删除
-        String redisKey = REDIS_KEY_PREFIX + id;
-        redisTemplate.delete(redisKey);
+        // 从本地和Redis缓存中删除，并通知其他实例
+        cache.evict(id);
         
         log.info("删除事故检测数据: {}", id);
     }
-    
-    /**
-     * 转换为DTO
-     */
-    private AccidentDetectionDTO convertToDTO(AccidentDetection accidentDetection) {
-        AccidentDetectionDTO dto = new AccidentDetectionDTO();
-        BeanUtils.copyProperties(accidentDetection, dto);
-        
-        // 处理图片数据
-        if (accidentDetection.getImageData() != null) {
-            String base64Image = Base64.getEncoder().encodeToString(accidentDetection.getImageData());
-            dto.setImageData(base64Image);
-        }
-        
-        // 设置枚举值
-        if (accidentDetection.getSeverity() != null) {
-            dto.setSeverity(accidentDetection.getSeverity().name());
-        }
-        if (accidentDetection.getStatus() != null) {
-            dto.setStatus(accidentDetection.getStatus().name());
-        }
-        
-        return dto;
-    }
-    
-    /**
-     * 转换为JSON字符串
-     */
-    private String convertToJson(AccidentDetection accidentDetection) {
-        // 这里可以使用Jackson或其他JSON库
-        // 为了简化，这里返回一个简单的字符串
-        return String.format("{\"id\":%d,\"dateTime\":\"%s\",\"confidenceScore\":%s,\"severity\":\"%s\"}", 
-                accidentDetection.getId(), 
-                accidentDetection.getDateTime(), 
-                accidentDetection.getConfidenceScore(),
-                accidentDetection.getSeverity());
-    }
 }
-
@@ -1,11 +1,13 @@
 package com.smartflow.ai.service;
 
 import com.smartflow.ai.dto.TrafficInfoDto;
-import com.smartflow.ai.model.AccidentDetection;
-import com.smartflow.ai.model.TrafficData;
+import com.smartflow.ai.entity.AccidentDetection;
+import com.smartflow.ai.entity.TrafficData;
+import com.smartflow.ai.model.TrafficFrame;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 
@@ -15,19 +17,24 @@ import java.util.Map;
 public interface AiDetectionService {
     
     /**
-     * 开始视频流检测
+     * 处理单帧图像
      */
-    void startVideoDetection();
+    TrafficInfoDto processFrame(byte[] imageData);
     
     /**
-     * 停止视频流检测
+     * 处理指定摄像头的单帧图像
      */
-    void stopVideoDetection();
+    TrafficInfoDto processFrame(Long cameraId, byte[] imageData);
     
     /**
-     * 处理单帧图像
+     * 处理指定摄像头的单帧图像，帧数据为只读视图，调用返回后缓冲区可被复用
      */
-    TrafficInfoDto processFrame(byte[] imageData);
+    TrafficInfoDto processFrame(Long cameraId, ByteBuffer frame);
+    
+    /**
+     * 处理指定摄像头的单帧图像，结果写入调用方复用的 result，不分配中间对象
+     */
+    void processFrame(Long cameraId, ByteBuffer frame, TrafficFrame result);
     
     /**
      * 检测事故
@@ -35,14 +42,37 @@ public interface AiDetectionService {
     AccidentDetection detectAccident(byte[] imageData);
     
     /**
-     * 获取实时交通数据
+     * 检测指定摄像头的事故
+     */
+    AccidentDetection detectAccident(Long cameraId, String location, byte[] imageData);
+    
+    /**
+     * 检测指定摄像头的事故，帧数据为只读视图，调用返回后缓冲区可被复用
+     */
+    AccidentDetection detectAccident(Long cameraId, String location, ByteBuffer frame);
+    
+    /**
+     * 获取实时交通数据（所有活跃摄像头的平均）
      */
     TrafficInfoDto getCurrentTrafficInfo();
     
     /**
-     * 获取历史交通数据
+     * 获取指定摄像头的实时交通数据，无数据时返回null
+     */
+    TrafficInfoDto getCurrentTrafficInfo(Long cameraId);
+    
+    /**
+     * 获取所有活跃摄像头的实时交通数据
+     */
+    Map<Long, TrafficInfoDto> getAllCurrentTrafficInfo();
+    
+    /**
+     * 获取历史交通数据，按ID降序分页
+     *
+     * @param beforeId 上一页最后一条记录的ID，为空时从最新一条开始
+     * @param size 每页行数，为空时使用默认值
      */
-    List<TrafficData> getHistoricalTrafficData(int hours);
+    List<TrafficData> getHistoricalTrafficData(int hours, Long beforeId, Integer size);
     
     /**
      * 获取事故检测记录
@@ -0,0 +1,233 @@
+package com.smartflow.ai.service;
+
+import com.smartflow.ai.model.TrafficFrame;
+import com.smartflow.traffic.ai.client.DataIngestionClient;
+import com.smartflow.traffic.ai.dto.ApiResponse;
+import com.smartflow.traffic.ai.dto.CameraDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按摄像头划分的检测工作线程池
+ * 每个摄像头一个检测任务，拥有独立的帧间隔和事故冷却时间，线程数受CPU核数限制
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DetectionWorkerPool {
+
+    /**
+     * 无法获取摄像头列表时使用的默认摄像头
+     */
+    private static final long DEFAULT_CAMERA_ID = 0L;
+    private static final String DEFAULT_CAMERA_LOCATION = "Intersection A";
+
+    /**
+     * 模拟检测不读取图像，所有任务共用一个空帧
+     */
+    private static final ByteBuffer EMPTY_FRAME = ByteBuffer.allocate(0).asReadOnlyBuffer();
+
+    private final AiDetectionService aiDetectionService;
+    private final DataIngestionClient dataIngestionClient;
+    private final AccidentCooldownTable accidentCooldownTable;
+
+    @Value("${ai.detection.workers.max-concurrency:0}")
+    private int maxConcurrency;
+
+    @Value("${ai.detection.workers.frame-interval-ms:2000}")
+    private long defaultFrameIntervalMs;
+
+    @Value("${ai.detection.accident-cooldown:900}")
+    private int defaultAccidentCooldownSeconds;
+
+    private final Map<Long, DetectionWorker> workers = new ConcurrentHashMap<>();
+    private volatile boolean autoDiscovery;
+    private ScheduledThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int poolSize = maxConcurrency > 0 ? Math.min(maxConcurrency, cores) : cores;
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ScheduledThreadPoolExecutor(poolSize, r -> {
+            Thread thread = new Thread(r, "detection-worker-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        log.info("Detection worker pool initialized with {} threads", poolSize);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopAll();
+        executor.shutdown();
+    }
+
+    /**
+     * 为数据接入服务返回的所有摄像头启动检测，并定期同步摄像头列表
+     */
+    public synchronized int startAll() {
+        autoDiscovery = true;
+        syncCameras();
+        return workers.size();
+    }
+
+    /**
+     * 停止所有摄像头的检测
+     */
+    public synchronized void stopAll() {
+        autoDiscovery = false;
+        for (Long cameraId : new ArrayList<>(workers.keySet())) {
+            stop(cameraId);
+        }
+    }
+
+    /**
+     * 启动单个摄像头的检测
+     *
+     * @param frameIntervalMs 帧间隔，为空时使用默认值
+     * @param accidentCooldownSeconds 事故冷却时间，为空时使用默认值
+     * @return 是否新启动
+     */
+    public boolean start(Long cameraId, String location, Long frameIntervalMs, Integer accidentCooldownSeconds) {
+        long interval = frameIntervalMs != null && frameIntervalMs > 0 ? frameIntervalMs : defaultFrameIntervalMs;
+        int cooldown = accidentCooldownSeconds != null && accidentCooldownSeconds >= 0
+                ? accidentCooldownSeconds : defaultAccidentCooldownSeconds;
+        DetectionWorker worker = new DetectionWorker(cameraId, location);
+        if (workers.putIfAbsent(cameraId, worker) != null) {
+            log.warn("Video detection is already running for camera {}", cameraId);
+            return false;
+        }
+        accidentCooldownTable.register(cameraId, TimeUnit.SECONDS.toMillis(cooldown));
+        worker.future = executor.scheduleWithFixedDelay(worker, 0, interval, TimeUnit.MILLISECONDS);
+        log.info("Started video detection for camera {} ({}), frameInterval={}ms, accidentCooldown={}s",
+                cameraId, location, interval, cooldown);
+        return true;
+    }
+
+    /**
+     * 停止单个摄像头的检测
+     *
+     * @return 是否存在并已停止
+     */
+    public boolean stop(Long cameraId) {
+        DetectionWorker worker = workers.remove(cameraId);
+        if (worker == null) {
+            log.warn("Video detection is not running for camera {}", cameraId);
+            return false;
+        }
+        if (worker.future != null) {
+            worker.future.cancel(false);
+        }
+        accidentCooldownTable.unregister(cameraId);
+        log.info("Stopped video detection for camera {}", cameraId);
+        return true;
+    }
+
+    /**
+     * 正在检测的摄像头ID
+     */
+    public Set<Long> getActiveCameraIds() {
+        return Collections.unmodifiableSet(new HashSet<>(workers.keySet()));
+    }
+
+    /**
+     * 自动发现模式下定期同步摄像头列表，启动新增摄像头、停止已移除摄像头
+     */
+    @Scheduled(fixedDelayString = "${ai.detection.workers.camera-refresh-ms:60000}")
+    public synchronized void refreshCameras() {
+        if (autoDiscovery) {
+            syncCameras();
+        }
+    }
+
+    private void syncCameras() {
+        List<CameraDTO> cameras = fetchCameras();
+        Set<Long> cameraIds = new HashSet<>();
+        for (CameraDTO camera : cameras) {
+            cameraIds.add(camera.getId());
+            if (!workers.containsKey(camera.getId())) {
+                start(camera.getId(), camera.getLocation(), null, null);
+            }
+        }
+        for (Long cameraId : new ArrayList<>(workers.keySet())) {
+            if (!cameraIds.contains(cameraId)) {
+                stop(cameraId);
+            }
+        }
+    }
+
+    private List<CameraDTO> fetchCameras() {
+        try {
+            ApiResponse<List<CameraDTO>> response = dataIngestionClient.getCameras();
+            if (response != null && response.isSuccess() && response.getData() != null
+                    && !response.getData().isEmpty()) {
+                return response.getData();
+            }
+            log.warn("No cameras returned by data-ingestion-service, falling back to default camera");
+        } catch (Exception e) {
+            log.warn("Failed to fetch cameras from data-ingestion-service, falling back to default camera", e);
+        }
+        CameraDTO fallback = new CameraDTO();
+        fallback.setId(DEFAULT_CAMERA_ID);
+        fallback.setLocation(DEFAULT_CAMERA_LOCATION);
+        return Collections.singletonList(fallback);
+    }
+
+    /**
+     * 单个摄像头的检测任务
+     * 以固定延迟调度，同一摄像头的任务不会并发执行；事故冷却由 AccidentCooldownTable 按摄像头控制
+     */
+    private final class DetectionWorker implements Runnable {
+
+        private final Long cameraId;
+        private final String location;
+        private final TrafficFrame result = new TrafficFrame();
+        private volatile ScheduledFuture<?> future;
+
+        private DetectionWorker(Long cameraId, String location) {
+            this.cameraId = cameraId;
+            this.location = location;
+        }
+
+        @Override
+        public void run() {
+            // 启动与停止并发时，已被移除的任务自行退出
+            if (workers.get(cameraId) != this) {
+                if (future != null) {
+                    future.cancel(false);
+                }
+                return;
+            }
+            try {
+                // 模拟处理视频帧
+                aiDetectionService.processFrame(cameraId, EMPTY_FRAME, result);
+
+                // 模拟事故检测，冷却期由服务按摄像头判断
+                aiDetectionService.detectAccident(cameraId, location, EMPTY_FRAME);
+            } catch (Exception e) {
+                // 异常不能抛出，否则调度器会取消该摄像头的后续执行
+                log.error("Error in video detection for camera {}", cameraId, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.smartflow.ai.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 视频帧直接内存缓冲池
+ * 上传的帧直接读入复用的堆外缓冲区交给检测器，避免每帧分配堆内数组
+ */
+@Slf4j
+@Component
+public class FrameBufferPool {
+
+    @Value("${ai.detection.frames.buffer-size:4194304}")
+    private int bufferSize;
+
+    @Value("${ai.detection.frames.pool-size:64}")
+    private int poolSize;
+
+    @Value("${ai.detection.frames.acquire-timeout-ms:100}")
+    private long acquireTimeoutMs;
+
+    @Value("${ai.detection.frames.batch-max-bytes:268435456}")
+    private long batchMaxBytes;
+
+    private BlockingQueue<ByteBuffer> free;
+    private final AtomicInteger allocated = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        free = new ArrayBlockingQueue<>(poolSize);
+        log.info("Frame buffer pool initialized: bufferSize={}, poolSize={}", bufferSize, poolSize);
+    }
+
+    /**
+     * 单个缓冲区容量，即允许的最大帧大小
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * 一次批量上传的最大字节数；各帧逐个读入同一个缓冲区，该上限不影响内存占用
+     */
+    public long getBatchMaxBytes() {
+        return batchMaxBytes;
+    }
+
+    /**
+     * 获取缓冲区，池未满时按需分配，池耗尽时最多等待 acquireTimeoutMs 毫秒
+     *
+     * @return 缓冲区，超时返回null
+     */
+    public ByteBuffer acquire() throws InterruptedException {
+        ByteBuffer buffer = free.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        while (true) {
+            int current = allocated.get();
+            if (current >= poolSize) {
+                break;
+            }
+            if (allocated.compareAndSet(current, current + 1)) {
+                return ByteBuffer.allocateDirect(bufferSize);
+            }
+        }
+        return free.poll(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 归还缓冲区
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer != null) {
+            buffer.clear();
+            free.offer(buffer);
+        }
+    }
+
+    /**
+     * 将输入流读入缓冲区，读取完成后缓冲区已切换为读模式
+     *
+     * @return 帧超过缓冲区容量时返回false
+     */
+    public static boolean readFrame(InputStream in, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        ReadableByteChannel channel = Channels.newChannel(in);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                buffer.flip();
+                return true;
+            }
+        }
+        // 缓冲区已满，确认流是否已结束
+        if (in.read() < 0) {
+            buffer.flip();
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,154 @@
+package com.smartflow.ai.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 基于本地文件的内容寻址帧存储
+ * 以图片内容的SHA-256作为引用，相同内容只保存一份；数据库只保存引用
+ */
+@Slf4j
+@Component
+public class FrameStore {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int REF_LENGTH = 64;
+
+    @Value("${ai.detection.frame-store.path:/app/data/frames}")
+    private String rootPath;
+
+    private Path root;
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(rootPath).toAbsolutePath();
+        Files.createDirectories(root);
+        log.info("Frame store initialized at {}", root);
+    }
+
+    /**
+     * 保存图片，已存在相同内容时直接返回引用
+     *
+     * @param frame 图片数据，读取不改变其位置
+     * @return 内容引用（SHA-256十六进制）
+     */
+    public String put(ByteBuffer frame) {
+        String ref = hash(frame.duplicate());
+        Path target = pathOf(ref);
+        if (Files.exists(target)) {
+            return ref;
+        }
+        Path temp = null;
+        try {
+            Files.createDirectories(target.getParent());
+            temp = Files.createTempFile(target.getParent(), ref, ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer source = frame.duplicate();
+                while (source.hasRemaining()) {
+                    channel.write(source);
+                }
+                channel.force(false);
+            }
+            // 写完再原子改名，读取方不会看到半个文件
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+        } catch (FileAlreadyExistsException e) {
+            // 并发写入相同内容
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入帧存储失败: " + ref, e);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // 残留临时文件不影响读取
+                }
+            }
+        }
+        return ref;
+    }
+
+    /**
+     * 保存图片
+     */
+    public String put(byte[] data) {
+        return put(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * 引用是否存在
+     */
+    public boolean exists(String ref) {
+        return isValidRef(ref) && Files.exists(pathOf(ref));
+    }
+
+    /**
+     * 以内存映射方式只读打开图片
+     *
+     * @return 映射缓冲区，引用不存在时返回null
+     */
+    public MappedByteBuffer map(String ref) throws IOException {
+        if (!exists(ref)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(pathOf(ref), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * 校验引用格式，防止路径穿越
+     */
+    public static boolean isValidRef(String ref) {
+        if (ref == null || ref.length() != REF_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < REF_LENGTH; i++) {
+            char c = ref.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 两级目录分散文件：ab/cd/abcd...
+     */
+    private Path pathOf(String ref) {
+        return root.resolve(ref.substring(0, 2)).resolve(ref.substring(2, 4)).resolve(ref);
+    }
+
+    private static String hash(ByteBuffer data) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(data);
+        byte[] bytes = digest.digest();
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
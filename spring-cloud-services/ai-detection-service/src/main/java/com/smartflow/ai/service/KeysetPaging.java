@@ -0,0 +1,35 @@
+package com.smartflow.ai.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+/**
+ * 列表查询的键集分页参数
+ * 每页行数有默认值和上限，游标为上一页最后一条记录的ID
+ */
+@Component
+public class KeysetPaging {
+
+    @Value("${ai.detection.query.default-page-size:50}")
+    private int defaultPageSize;
+
+    @Value("${ai.detection.query.max-page-size:500}")
+    private int maxPageSize;
+
+    /**
+     * 每页行数限制，未指定时使用默认值，超过上限时截断
+     */
+    public Pageable limit(Integer size) {
+        int pageSize = size == null || size <= 0 ? defaultPageSize : Math.min(size, maxPageSize);
+        return PageRequest.of(0, pageSize);
+    }
+
+    /**
+     * 游标，未指定时从最新一条开始
+     */
+    public static long cursor(Long beforeId) {
+        return beforeId != null ? beforeId : Long.MAX_VALUE;
+    }
+}
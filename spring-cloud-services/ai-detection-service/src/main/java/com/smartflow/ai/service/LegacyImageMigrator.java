@@ -0,0 +1,84 @@
+package com.smartflow.ai.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 启动时把历史行中的 image_data 图片迁移到帧存储
+ * 分批处理，每行写入帧存储后回填 image_ref 并清空 image_data；没有 image_data 列的表直接跳过，
+ * 缺少 image_ref 列的旧表（基线结构）先补上该列，
+ * 迁移失败只记录告警，不影响启动
+ * 先于 StorageSchemaMigrator 执行，旧表的行带着图片引用并入新表
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class LegacyImageMigrator implements ApplicationRunner {
+
+    private static final String[] TABLES = {"accident_detection", "accident_detections"};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FrameStore frameStore;
+
+    @Value("${ai.detection.frame-store.migrate-legacy:true}")
+    private boolean enabled;
+
+    @Value("${ai.detection.frame-store.migrate-batch-size:100}")
+    private int batchSize;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        for (String table : TABLES) {
+            try {
+                if (!SchemaMetadata.tableExists(jdbcTemplate, table)
+                        || !SchemaMetadata.columnExists(jdbcTemplate, table, "image_data")) {
+                    log.debug("Skipping legacy image migration for {}: no image_data column", table);
+                    continue;
+                }
+                if (SchemaMetadata.ensureImageRefColumn(jdbcTemplate, table)) {
+                    log.info("Added image_ref column to {}", table);
+                }
+                migrate(table);
+            } catch (RuntimeException e) {
+                // 帧存储写入失败（UncheckedIOException）或数据库错误不阻止启动，剩余的行下次启动继续迁移
+                log.warn("Legacy image migration for {} failed, remaining rows will be retried on next startup",
+                        table, e);
+            }
+        }
+    }
+
+    private void migrate(String table) {
+        String select = "SELECT id, image_data FROM " + table
+                + " WHERE image_data IS NOT NULL AND image_ref IS NULL LIMIT " + batchSize;
+        String update = "UPDATE " + table + " SET image_ref = ?, image_data = NULL WHERE id = ?";
+        int migrated = 0;
+        while (true) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(select);
+            if (rows.isEmpty()) {
+                break;
+            }
+            for (Map<String, Object> row : rows) {
+                String ref = frameStore.put((byte[]) row.get("image_data"));
+                jdbcTemplate.update(update, ref, row.get("id"));
+            }
+            migrated += rows.size();
+        }
+        if (migrated > 0) {
+            log.info("Migrated {} legacy images from {} to the frame store", migrated, table);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.smartflow.ai.service;
+
+import com.smartflow.ai.dto.TrafficInfoDto;
+import com.smartflow.ai.model.TrafficFrame;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 实时交通状态
+ * 每个摄像头保存最近若干帧检测结果的环形缓冲区（基本类型数组），并维护滑动窗口累计值，
+ * 每次更新 O(1)，查询当前交通信息无需访问数据库
+ */
+@Component
+public class LiveTrafficState {
+
+    /**
+     * 无摄像头编号的检测结果归入的摄像头
+     */
+    public static final long UNKNOWN_CAMERA = 0L;
+    private static final Long UNKNOWN_CAMERA_KEY = UNKNOWN_CAMERA;
+
+    /**
+     * 参与统计的类别ID，窗口数组按其下标存放
+     */
+    private static final int[] CLASSES = TrafficFrame.CLASS_IDS;
+
+    @Value("${ai.detection.live.window-size:30}")
+    private int windowSize;
+
+    @Value("${ai.detection.live.stale-ms:300000}")
+    private long staleMs;
+
+    private final Map<Long, CameraWindow> windows = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一帧检测结果
+     */
+    public void update(Long cameraId, TrafficFrame sample) {
+        Long key = cameraId != null ? cameraId : UNKNOWN_CAMERA_KEY;
+        CameraWindow window = windows.get(key);
+        if (window == null) {
+            window = windows.computeIfAbsent(key, k -> new CameraWindow(windowSize));
+        }
+        window.add(sample, System.currentTimeMillis());
+    }
+
+    /**
+     * 单个摄像头的滑动窗口交通信息
+     *
+     * @return 摄像头无数据或数据已过期时返回null
+     */
+    public TrafficInfoDto snapshot(Long cameraId) {
+        CameraWindow window = windows.get(cameraId != null ? cameraId : UNKNOWN_CAMERA_KEY);
+        if (window == null) {
+            return null;
+        }
+        Aggregate aggregate = new Aggregate();
+        return window.collectInto(aggregate, System.currentTimeMillis() - staleMs) ? aggregate.toDto(1) : null;
+    }
+
+    /**
+     * 所有活跃摄像头的滑动窗口交通信息
+     */
+    public Map<Long, TrafficInfoDto> snapshotAll() {
+        long freshAfter = System.currentTimeMillis() - staleMs;
+        Map<Long, TrafficInfoDto> result = new TreeMap<>();
+        for (Map.Entry<Long, CameraWindow> entry : windows.entrySet()) {
+            Aggregate aggregate = new Aggregate();
+            if (entry.getValue().collectInto(aggregate, freshAfter)) {
+                result.put(entry.getKey(), aggregate.toDto(1));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 所有活跃摄像头的平均交通信息：数量和流量取各摄像头平均，速度按数量加权
+     */
+    public TrafficInfoDto snapshotCombined() {
+        long freshAfter = System.currentTimeMillis() - staleMs;
+        Aggregate aggregate = new Aggregate();
+        int cameras = 0;
+        for (CameraWindow window : windows.values()) {
+            if (window.collectInto(aggregate, freshAfter)) {
+                cameras++;
+            }
+        }
+        return aggregate.toDto(Math.max(cameras, 1));
+    }
+
+    /**
+     * 移除长时间无更新的摄像头
+     */
+    @Scheduled(fixedDelayString = "${ai.detection.live.sweep-interval-ms:60000}")
+    public void sweepStale() {
+        long freshAfter = System.currentTimeMillis() - staleMs;
+        Iterator<CameraWindow> it = windows.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().lastUpdated < freshAfter) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 单个摄像头的环形缓冲区
+     * 同一摄像头的更新一般来自单个检测任务，加锁只为和接口上传的帧互斥，无竞争开销
+     */
+    private static final class CameraWindow {
+
+        private final int capacity;
+        private final int[] counts;
+        private final double[] speeds;
+        private final double[] volumes;
+        private final long[] countSums = new long[CLASSES.length];
+        private final double[] speedSums = new double[CLASSES.length];
+        private double volumeSum;
+        private int size;
+        private int next;
+        private volatile long lastUpdated;
+
+        private CameraWindow(int capacity) {
+            this.capacity = capacity;
+            this.counts = new int[capacity * CLASSES.length];
+            this.speeds = new double[capacity * CLASSES.length];
+            this.volumes = new double[capacity];
+        }
+
+        private synchronized void add(TrafficFrame sample, long now) {
+            int base = next * CLASSES.length;
+            boolean evict = size == capacity;
+            for (int c = 0; c < CLASSES.length; c++) {
+                int count = sample.count(CLASSES[c]);
+                double speed = sample.speed(CLASSES[c]);
+                if (evict) {
+                    countSums[c] -= counts[base + c];
+                    speedSums[c] -= speeds[base + c];
+                }
+                counts[base + c] = count;
+                speeds[base + c] = speed;
+                countSums[c] += count;
+                speedSums[c] += speed;
+            }
+            double volume = sample.getTotalVolume();
+            if (evict) {
+                volumeSum -= volumes[next];
+            }
+            volumes[next] = volume;
+            volumeSum += volume;
+            next = (next + 1) % capacity;
+            if (!evict) {
+                size++;
+            }
+            lastUpdated = now;
+        }
+
+        /**
+         * 把窗口平均值累加到汇总中
+         *
+         * @return 窗口有数据且未过期
+         */
+        private synchronized boolean collectInto(Aggregate aggregate, long freshAfter) {
+            if (size == 0 || lastUpdated < freshAfter) {
+                return false;
+            }
+            for (int c = 0; c < CLASSES.length; c++) {
+                double avgCount = (double) countSums[c] / size;
+                aggregate.counts[c] += avgCount;
+                aggregate.weightedSpeeds[c] += speedSums[c] / size * avgCount;
+                aggregate.plainSpeeds[c] += speedSums[c] / size;
+            }
+            aggregate.volume += volumeSum / size;
+            aggregate.windows++;
+            return true;
+        }
+    }
+
+    /**
+     * 多个窗口平均值的汇总
+     */
+    private static final class Aggregate {
+
+        private final double[] counts = new double[CLASSES.length];
+        private final double[] weightedSpeeds = new double[CLASSES.length];
+        private final double[] plainSpeeds = new double[CLASSES.length];
+        private double volume;
+        private int windows;
+
+        private TrafficInfoDto toDto(int cameras) {
+            Map<String, TrafficInfoDto.VehicleInfo> vehicles = new HashMap<>();
+            for (int c = 0; c < CLASSES.length; c++) {
+                // 数量为0时无法加权，退回各窗口速度的简单平均
+                double speed = counts[c] > 0 ? weightedSpeeds[c] / counts[c]
+                        : (windows > 0 ? plainSpeeds[c] / windows : 0.0);
+                vehicles.put(TrafficFrame.className(CLASSES[c]),
+                        new TrafficInfoDto.VehicleInfo((int) Math.round(counts[c] / cameras), speed));
+            }
+            double avgVolume = volume / cameras;
+            int level = TrafficFrame.congestionLevel(avgVolume);
+            return new TrafficInfoDto(vehicles, avgVolume, level, TrafficFrame.congestionLevelText(level));
+        }
+    }
+}
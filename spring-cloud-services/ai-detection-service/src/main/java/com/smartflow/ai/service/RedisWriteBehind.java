@@ -0,0 +1,253 @@
+package com.smartflow.ai.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis缓存异步写入器
+ * 缓存写入在事务提交后入队，由独立写线程合并同一键的多次写入，以管道方式批量发送；
+ * 请求线程和数据库事务不再等待Redis往返
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RedisWriteBehind {
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.detection.cache.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${ai.detection.cache.write-behind.batch-size:200}")
+    private int batchSize;
+
+    @Value("${ai.detection.cache.write-behind.flush-interval-ms:5}")
+    private long flushIntervalMs;
+
+    private BlockingQueue<Write> queue;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    private Timer flushTimer;
+    private DistributionSummary batchSizeSummary;
+    private Counter rejectedCounter;
+    private Counter failedCounter;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        Gauge.builder("ai.detection.cache.write-behind.queue.depth", queue, BlockingQueue::size)
+                .description("待写入Redis的缓存操作数")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("ai.detection.cache.write-behind.flush.latency")
+                .description("单次管道写入耗时")
+                .register(meterRegistry);
+        batchSizeSummary = DistributionSummary.builder("ai.detection.cache.write-behind.batch.size")
+                .description("单次管道写入的键数")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("ai.detection.cache.write-behind.rejected")
+                .description("队列已满被丢弃的缓存写入数")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("ai.detection.cache.write-behind.failed")
+                .description("管道写入失败的缓存操作数")
+                .register(meterRegistry);
+
+        running = true;
+        writerThread = new Thread(this::runWriter, "redis-write-behind");
+        writerThread.start();
+        log.info("Redis缓存异步写入器已启动: queueCapacity={}, batchSize={}, flushIntervalMs={}",
+                queueCapacity, batchSize, flushIntervalMs);
+    }
+
+    /**
+     * 写入缓存
+     *
+     * @param afterWrite 写入Redis后执行，可为null
+     */
+    public void set(String key, Object value, Duration ttl, Runnable afterWrite) {
+        afterCommit(new Write(key, value, ttl.toMillis(), afterWrite));
+    }
+
+    /**
+     * 删除缓存
+     *
+     * @param afterWrite 删除后执行，可为null
+     */
+    public void delete(String key, Runnable afterWrite) {
+        afterCommit(new Write(key, null, 0, afterWrite));
+    }
+
+    /**
+     * 在当前事务提交后执行，事务回滚时丢弃；没有事务时立即执行
+     */
+    public static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private void afterCommit(Write write) {
+        afterCommit(() -> enqueue(write));
+    }
+
+    /**
+     * 缓存只是加速手段，队列满时不阻塞调用方，直接丢弃并让下次读取回源
+     */
+    private void enqueue(Write write) {
+        if (queue.offer(write)) {
+            return;
+        }
+        rejectedCounter.increment();
+        log.warn("Redis缓存写入队列已满，丢弃写入: {}", write.key);
+        // 丢弃写入时Redis可能留有旧值，删除失败也只能等过期
+        if (write.value != null) {
+            try {
+                redisTemplate.delete(write.key);
+            } catch (DataAccessException e) {
+                log.error("删除Redis缓存失败: {}", write.key, e);
+            }
+        }
+        write.runAfterWrite();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<Write> remaining = new ArrayList<>(batchSize);
+        while (queue.drainTo(remaining, batchSize) > 0) {
+            flush(remaining);
+            remaining.clear();
+        }
+        log.info("Redis缓存异步写入器已停止");
+    }
+
+    private void runWriter() {
+        List<Write> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Write first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // 写入延迟直接影响其他实例读到新值的时间，只取已排队的操作，不额外等待
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                flush(batch);
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Write> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        // 同一键只保留最后一次写入，回调全部保留
+        Map<String, Write> latest = new LinkedHashMap<>();
+        List<Runnable> callbacks = new ArrayList<>();
+        for (Write write : batch) {
+            latest.put(write.key, write);
+            if (write.afterWrite != null) {
+                callbacks.add(write.afterWrite);
+            }
+        }
+
+        long start = System.nanoTime();
+        try {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    for (Write write : latest.values()) {
+                        if (write.value != null) {
+                            ops.opsForValue().set(write.key, write.value, write.ttlMillis, TimeUnit.MILLISECONDS);
+                        } else {
+                            ops.delete(write.key);
+                        }
+                    }
+                    return null;
+                }
+            });
+            batchSizeSummary.record(latest.size());
+        } catch (Exception e) {
+            failedCounter.increment(latest.size());
+            log.error("管道写入Redis缓存失败: {} 个键", latest.size(), e);
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        for (Runnable callback : callbacks) {
+            try {
+                callback.run();
+            } catch (Exception e) {
+                log.error("缓存写入回调执行失败", e);
+            }
+        }
+    }
+
+    private static final class Write {
+
+        private final String key;
+        private final Object value;
+        private final long ttlMillis;
+        private final Runnable afterWrite;
+
+        private Write(String key, Object value, long ttlMillis, Runnable afterWrite) {
+            this.key = key;
+            this.value = value;
+            this.ttlMillis = ttlMillis;
+            this.afterWrite = afterWrite;
+        }
+
+        private void runAfterWrite() {
+            if (afterWrite != null) {
+                afterWrite.run();
+            }
+        }
+    }
+}
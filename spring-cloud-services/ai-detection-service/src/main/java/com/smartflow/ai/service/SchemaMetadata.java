@@ -0,0 +1,45 @@
+package com.smartflow.ai.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 启动迁移使用的表结构查询，按当前库的 information_schema 判断
+ */
+final class SchemaMetadata {
+
+    private SchemaMetadata() {
+    }
+
+    static boolean tableExists(JdbcTemplate jdbcTemplate, String table) {
+        return count(jdbcTemplate, "SELECT COUNT(*) FROM information_schema.tables "
+                + "WHERE table_schema = DATABASE() AND table_name = ?", table) > 0;
+    }
+
+    static boolean columnExists(JdbcTemplate jdbcTemplate, String table, String column) {
+        return count(jdbcTemplate, "SELECT COUNT(*) FROM information_schema.columns "
+                + "WHERE table_schema = DATABASE() AND table_name = ? AND column_name = ?", table, column) > 0;
+    }
+
+    static boolean indexExists(JdbcTemplate jdbcTemplate, String table, String index) {
+        return count(jdbcTemplate, "SELECT COUNT(*) FROM information_schema.statistics "
+                + "WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ?", table, index) > 0;
+    }
+
+    /**
+     * 旧表没有 image_ref 列时补上（基线结构中只有 image_data），图片迁移和并入旧表都依赖该列
+     *
+     * @return 是否新增了该列
+     */
+    static boolean ensureImageRefColumn(JdbcTemplate jdbcTemplate, String table) {
+        if (columnExists(jdbcTemplate, table, "image_ref")) {
+            return false;
+        }
+        jdbcTemplate.execute("ALTER TABLE " + table + " ADD COLUMN image_ref CHAR(64) NULL");
+        return true;
+    }
+
+    private static long count(JdbcTemplate jdbcTemplate, String sql, Object... args) {
+        Long count = jdbcTemplate.queryForObject(sql, Long.class, args);
+        return count != null ? count : 0;
+    }
+}
@@ -0,0 +1,147 @@
+package com.smartflow.ai.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 把历史存储结构迁移到统一的 traffic_data / accident_detection 表
+ * <ul>
+ *   <li>两张表补齐 camera_id 列和 (camera_id, date_time) 复合索引</li>
+ *   <li>旧表 accident_detections 的行分批并入 accident_detection，每批插入和删除在同一事务中，中断后可重复执行；
+ *       并入后ID重新分配，旧表清空后删除</li>
+ *   <li>严重程度和状态统一为枚举名称（大写），无法识别的值改为默认值</li>
+ * </ul>
+ * 在 LegacyImageMigrator 之后、其他启动任务之前执行；仍带 image_data 的旧行等图片迁移后再并入
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@RequiredArgsConstructor
+public class StorageSchemaMigrator implements ApplicationRunner {
+
+    private static final String LEGACY_ACCIDENT_TABLE = "accident_detections";
+    private static final String[] TABLES = {"traffic_data", "accident_detection"};
+    private static final String CAMERA_INDEX = "idx_camera_date_time";
+
+    private static final String SEVERITY_SQL = "CASE WHEN UPPER(severity) IN ('LOW', 'MEDIUM', 'HIGH', 'CRITICAL') "
+            + "THEN UPPER(severity) ELSE 'MEDIUM' END";
+    private static final String STATUS_SQL = "CASE WHEN UPPER(status) IN ('PENDING', 'INVESTIGATING', 'RESOLVED', 'CANCELLED') "
+            + "THEN UPPER(status) ELSE 'PENDING' END";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${ai.detection.storage.migrate:true}")
+    private boolean enabled;
+
+    @Value("${ai.detection.storage.migrate-batch-size:1000}")
+    private int batchSize;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        for (String table : TABLES) {
+            if (!tableExists(table)) {
+                continue;
+            }
+            if (!columnExists(table, "camera_id")) {
+                jdbcTemplate.execute("ALTER TABLE " + table + " ADD COLUMN camera_id BIGINT NULL AFTER id");
+                log.info("{} 已添加 camera_id 列", table);
+            }
+            if (!indexExists(table, CAMERA_INDEX)) {
+                jdbcTemplate.execute("CREATE INDEX " + CAMERA_INDEX + " ON " + table + " (camera_id, date_time)");
+                log.info("{} 已创建索引 {}", table, CAMERA_INDEX);
+            }
+        }
+        if (tableExists("accident_detection")) {
+            normalizeAccidentEnums();
+            if (tableExists(LEGACY_ACCIDENT_TABLE)) {
+                mergeLegacyAccidents();
+            }
+        }
+    }
+
+    /**
+     * 旧数据和初始化脚本写入的 'High'、'Pending' 等值无法按枚举读取
+     */
+    private void normalizeAccidentEnums() {
+        int updated = jdbcTemplate.update("UPDATE accident_detection SET severity = " + SEVERITY_SQL
+                + ", status = " + STATUS_SQL
+                + " WHERE BINARY severity NOT IN ('LOW', 'MEDIUM', 'HIGH', 'CRITICAL')"
+                + " OR BINARY status NOT IN ('PENDING', 'INVESTIGATING', 'RESOLVED', 'CANCELLED')"
+                + " OR severity IS NULL OR status IS NULL");
+        if (updated > 0) {
+            log.info("accident_detection 已规范化 {} 行的严重程度和状态", updated);
+        }
+    }
+
+    private void mergeLegacyAccidents() {
+        // 从基线结构直接升级时旧表没有 image_ref 列（图片迁移关闭时也不会补上）
+        if (SchemaMetadata.ensureImageRefColumn(jdbcTemplate, LEGACY_ACCIDENT_TABLE)) {
+            log.info("{} 已添加 image_ref 列", LEGACY_ACCIDENT_TABLE);
+        }
+        // 图片尚未迁移到帧存储的行暂不并入，避免丢失图片
+        String pending = columnExists(LEGACY_ACCIDENT_TABLE, "image_data") ? " WHERE image_data IS NULL" : "";
+        String select = "SELECT id FROM " + LEGACY_ACCIDENT_TABLE + pending + " ORDER BY id LIMIT ? FOR UPDATE";
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        long merged = 0;
+        while (true) {
+            Integer moved = transactionTemplate.execute(status -> {
+                List<Long> ids = jdbcTemplate.queryForList(select, Long.class, batchSize);
+                if (ids.isEmpty()) {
+                    return 0;
+                }
+                String in = " WHERE id IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+                jdbcTemplate.update("INSERT INTO accident_detection (camera_id, date_time, image_ref, involved_vehicles, "
+                        + "confidence_score, severity, status, location, description, created_at, updated_at) "
+                        + "SELECT NULL, date_time, image_ref, involved_vehicles, ROUND(COALESCE(confidence_score, 0), 2), "
+                        + SEVERITY_SQL + ", " + STATUS_SQL + ", location, description, date_time, date_time "
+                        + "FROM " + LEGACY_ACCIDENT_TABLE + in + " ORDER BY id", ids.toArray());
+                jdbcTemplate.update("DELETE FROM " + LEGACY_ACCIDENT_TABLE + in, ids.toArray());
+                return ids.size();
+            });
+            if (moved == null || moved == 0) {
+                break;
+            }
+            merged += moved;
+        }
+        if (merged > 0) {
+            log.info("{} 已并入 accident_detection: {} 行", LEGACY_ACCIDENT_TABLE, merged);
+        }
+
+        Long remaining = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + LEGACY_ACCIDENT_TABLE, Long.class);
+        if (remaining != null && remaining == 0) {
+            jdbcTemplate.execute("DROP TABLE " + LEGACY_ACCIDENT_TABLE);
+            log.info("旧表 {} 已清空并删除", LEGACY_ACCIDENT_TABLE);
+        } else {
+            log.warn("旧表 {} 还有 {} 行图片未迁移到帧存储，暂不并入", LEGACY_ACCIDENT_TABLE, remaining);
+        }
+    }
+
+    private boolean tableExists(String table) {
+        return SchemaMetadata.tableExists(jdbcTemplate, table);
+    }
+
+    private boolean columnExists(String table, String column) {
+        return SchemaMetadata.columnExists(jdbcTemplate, table, column);
+    }
+
+    private boolean indexExists(String table, String index) {
+        return SchemaMetadata.indexExists(jdbcTemplate, table, index);
+    }
+}
@@ -0,0 +1,225 @@
+package com.smartflow.ai.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 本地优先的两级缓存
+ * L1 为进程内 Caffeine 缓存（按容量 W-TinyLFU 淘汰），保存转换好的DTO；L2 为 Redis，保存实体；
+ * 写入在事务提交后生效，Redis 由 RedisWriteBehind 异步管道写入；
+ * 更新和删除在 Redis 写入后通过发布订阅广播失效消息，其他实例收到后清除本地条目
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TieredCache implements MessageListener {
+
+    /**
+     * 失效广播频道，消息格式：实例ID|区域|ID
+     */
+    public static final String INVALIDATION_CHANNEL = "ai-detection:cache:invalidate";
+
+    private static final String SEPARATOR = "|";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisWriteBehind redisWriteBehind;
+    private final MeterRegistry meterRegistry;
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Map<String, Region<?, ?>> regions = new ConcurrentHashMap<>();
+
+    @Value("${ai.detection.cache.local-max-size:10000}")
+    private long localMaxSize;
+
+    @Value("${ai.detection.cache.local-ttl-ms:600000}")
+    private long localTtlMs;
+
+    /**
+     * 创建缓存区域
+     *
+     * @param name      区域名称，用于失效广播和监控标签
+     * @param keyPrefix Redis键前缀
+     * @param redisTtl  Redis过期时间
+     * @param loader    数据库查询
+     * @param mapper    实体到DTO的转换，结果在L1中共享，调用方不得修改
+     */
+    public <E, D> Region<E, D> region(String name, String keyPrefix, Duration redisTtl,
+                                      Function<Long, Optional<E>> loader, Function<E, D> mapper) {
+        Cache<Long, D> local = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtlMs, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, local, name);
+        Region<E, D> region = new Region<>(name, keyPrefix, redisTtl, loader, mapper, local);
+        regions.put(name, region);
+        return region;
+    }
+
+    /**
+     * 接收其他实例的失效广播
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = body.split("\\|");
+        if (parts.length != 3 || instanceId.equals(parts[0])) {
+            return;
+        }
+        Region<?, ?> region = regions.get(parts[1]);
+        if (region == null) {
+            return;
+        }
+        try {
+            region.local.invalidate(Long.valueOf(parts[2]));
+        } catch (NumberFormatException e) {
+            log.warn("忽略无效的缓存失效消息: {}", body);
+        }
+    }
+
+    /**
+     * 单类数据的两级缓存
+     */
+    public final class Region<E, D> {
+
+        private final String name;
+        private final String keyPrefix;
+        private final Duration redisTtl;
+        private final Function<Long, Optional<E>> loader;
+        private final Function<E, D> mapper;
+        private final Cache<Long, D> local;
+        private final Counter l1Hits;
+        private final Counter l2Hits;
+        private final Counter dbHits;
+        private final Counter misses;
+        private final Timer l2Latency;
+        private final Timer dbLatency;
+
+        private Region(String name, String keyPrefix, Duration redisTtl, Function<Long, Optional<E>> loader,
+                       Function<E, D> mapper, Cache<Long, D> local) {
+            this.name = name;
+            this.keyPrefix = keyPrefix;
+            this.redisTtl = redisTtl;
+            this.loader = loader;
+            this.mapper = mapper;
+            this.local = local;
+            this.l1Hits = lookupCounter("l1");
+            this.l2Hits = lookupCounter("l2");
+            this.dbHits = lookupCounter("db");
+            this.misses = lookupCounter("miss");
+            this.l2Latency = latencyTimer("l2");
+            this.dbLatency = latencyTimer("db");
+        }
+
+        /**
+         * 依次查询 L1、Redis、数据库，命中后回填上层
+         *
+         * @return 数据不存在时返回null
+         */
+        public D get(Long id) {
+            D value = local.getIfPresent(id);
+            if (value != null) {
+                l1Hits.increment();
+                return value;
+            }
+
+            long start = System.nanoTime();
+            @SuppressWarnings("unchecked")
+            E cached = (E) redisTemplate.opsForValue().get(keyPrefix + id);
+            l2Latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (cached != null) {
+                l2Hits.increment();
+                log.debug("从Redis缓存获取{}: {}", name, id);
+                return putLocal(id, cached);
+            }
+
+            start = System.nanoTime();
+            Optional<E> loaded = loader.apply(id);
+            dbLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (!loaded.isPresent()) {
+                misses.increment();
+                return null;
+            }
+            dbHits.increment();
+            redisWriteBehind.set(keyPrefix + id, loaded.get(), redisTtl, null);
+            return putLocal(id, loaded.get());
+        }
+
+        /**
+         * 缓存新写入的数据，其他实例不可能持有该ID，不需要广播
+         */
+        public void put(Long id, E entity) {
+            RedisWriteBehind.afterCommit(() -> putLocal(id, entity));
+            redisWriteBehind.set(keyPrefix + id, entity, redisTtl, null);
+        }
+
+        /**
+         * 更新已有数据，Redis写入后通知其他实例清除本地旧值
+         */
+        public void update(Long id, E entity) {
+            RedisWriteBehind.afterCommit(() -> putLocal(id, entity));
+            redisWriteBehind.set(keyPrefix + id, entity, redisTtl, () -> broadcast(id));
+        }
+
+        /**
+         * 删除缓存，Redis删除后通知其他实例
+         */
+        public void evict(Long id) {
+            RedisWriteBehind.afterCommit(() -> local.invalidate(id));
+            redisWriteBehind.delete(keyPrefix + id, () -> broadcast(id));
+        }
+
+        private D putLocal(Long id, E entity) {
+            D value = mapper.apply(entity);
+            local.put(id, value);
+            return value;
+        }
+
+        private void broadcast(Long id) {
+            try {
+                stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, instanceId + SEPARATOR + name + SEPARATOR + id);
+            } catch (Exception e) {
+                // 广播失败时其他实例的本地条目最迟在 local-ttl-ms 后过期
+                log.error("发送缓存失效广播失败: {} {}", name, id, e);
+            }
+        }
+
+        private Counter lookupCounter(String tier) {
+            return Counter.builder("ai.detection.cache.lookups")
+                    .description("按命中层级统计的缓存查询数")
+                    .tag("cache", name)
+                    .tag("tier", tier)
+                    .register(meterRegistry);
+        }
+
+        private Timer latencyTimer(String tier) {
+            return Timer.builder("ai.detection.cache.latency")
+                    .description("各层级的查询耗时")
+                    .tag("cache", name)
+                    .tag("tier", tier)
+                    .register(meterRegistry);
+        }
+    }
+}
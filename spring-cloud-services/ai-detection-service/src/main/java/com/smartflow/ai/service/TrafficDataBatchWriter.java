@@ -0,0 +1,259 @@
+package com.smartflow.ai.service;
+
+import com.smartflow.ai.model.TrafficFrame;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 交通数据批量写入器
+ * 有界内存队列 + 独立写线程，按批量大小或时间窗口合并为JDBC批量插入，并在同一事务中累加汇总桶
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TrafficDataBatchWriter {
+
+    private static final String INSERT_SQL = "INSERT INTO traffic_data (camera_id, date_time, "
+            + "pedestrian_count, car_count, bicycle_count, bus_count, motorcycle_count, truck_count, "
+            + "pedestrian_speed, car_speed, bicycle_speed, bus_speed, motorcycle_speed, truck_speed, "
+            + "volume, congestion_level, created_at, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final PlatformTransactionManager transactionManager;
+    private final TrafficRollupService trafficRollupService;
+
+    @Value("${ai.detection.persistence.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${ai.detection.persistence.batch-size:500}")
+    private int batchSize;
+
+    @Value("${ai.detection.persistence.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${ai.detection.persistence.offer-timeout-ms:50}")
+    private long offerTimeoutMs;
+
+    private BlockingQueue<TrafficFrame> queue;
+    private TransactionTemplate transactionTemplate;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    private Timer flushTimer;
+    private DistributionSummary batchSizeSummary;
+    private Counter rejectedCounter;
+    private Counter failedCounter;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        Gauge.builder("ai.detection.persistence.queue.depth", queue, BlockingQueue::size)
+                .description("待写入数据库的交通数据条数")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("ai.detection.persistence.flush.latency")
+                .description("单次批量插入耗时")
+                .register(meterRegistry);
+        batchSizeSummary = DistributionSummary.builder("ai.detection.persistence.batch.size")
+                .description("单次批量插入的行数")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("ai.detection.persistence.rejected")
+                .description("队列已满被拒绝的交通数据条数")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("ai.detection.persistence.failed")
+                .description("批量插入失败丢弃的交通数据条数")
+                .register(meterRegistry);
+
+        running = true;
+        writerThread = new Thread(this::runWriter, "traffic-data-writer");
+        writerThread.start();
+        log.info("交通数据批量写入器已启动: queueCapacity={}, batchSize={}, flushIntervalMs={}",
+                queueCapacity, batchSize, flushIntervalMs);
+    }
+
+    /**
+     * 提交一条交通数据，队列已满时最多阻塞 offerTimeoutMs 毫秒
+     * 入队后由写线程持有，调用方不能再修改该实例
+     *
+     * @return 是否成功入队
+     */
+    public boolean submit(TrafficFrame frame) {
+        try {
+            if (queue.offer(frame, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rejectedCounter.increment();
+        log.warn("交通数据写入队列已满，丢弃数据: queueDepth={}", queue.size());
+        return false;
+    }
+
+    /**
+     * 当前队列深度
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // 写线程退出后把剩余数据同步刷入数据库
+        List<TrafficFrame> remaining = new ArrayList<>(batchSize);
+        while (queue.drainTo(remaining, batchSize) > 0) {
+            flush(remaining);
+            remaining.clear();
+        }
+        log.info("交通数据批量写入器已停止");
+    }
+
+    private void runWriter() {
+        List<TrafficFrame> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                TrafficFrame first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // 从第一条数据开始计时，凑满一批或时间窗口到期即刷写
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remainingNanos = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remainingNanos <= 0) {
+                        break;
+                    }
+                    TrafficFrame next = queue.poll(remainingNanos, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                flush(batch);
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<TrafficFrame> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.execute(status -> {
+                insert(batch);
+                trafficRollupService.apply(toSamples(batch));
+                return null;
+            });
+            batchSizeSummary.record(batch.size());
+            log.debug("批量写入交通数据: {} 条", batch.size());
+        } catch (Exception e) {
+            failedCounter.increment(batch.size());
+            log.error("批量写入交通数据失败，丢弃 {} 条", batch.size(), e);
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void insert(List<TrafficFrame> batch) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, data) -> {
+            if (data.getCameraId() != null) {
+                ps.setLong(1, data.getCameraId());
+            } else {
+                ps.setNull(1, Types.BIGINT);
+            }
+            ps.setTimestamp(2, new Timestamp(toSecond(data.getTimestampMillis())));
+            ps.setInt(3, data.count(TrafficFrame.PERSON));
+            ps.setInt(4, data.count(TrafficFrame.CAR));
+            ps.setInt(5, data.count(TrafficFrame.BICYCLE));
+            ps.setInt(6, data.count(TrafficFrame.BUS));
+            ps.setInt(7, data.count(TrafficFrame.MOTORCYCLE));
+            ps.setInt(8, data.count(TrafficFrame.TRUCK));
+            ps.setDouble(9, data.speed(TrafficFrame.PERSON));
+            ps.setDouble(10, data.speed(TrafficFrame.CAR));
+            ps.setDouble(11, data.speed(TrafficFrame.BICYCLE));
+            ps.setDouble(12, data.speed(TrafficFrame.BUS));
+            ps.setDouble(13, data.speed(TrafficFrame.MOTORCYCLE));
+            ps.setDouble(14, data.speed(TrafficFrame.TRUCK));
+            ps.setDouble(15, data.getTotalVolume());
+            ps.setInt(16, data.getCongestionLevel());
+            ps.setTimestamp(17, now);
+            ps.setTimestamp(18, now);
+        });
+    }
+
+    /**
+     * 汇总值与写入的列值一致：时间精确到秒，交通量和车速按列的两位小数四舍五入
+     */
+    private static List<TrafficRollupService.Sample> toSamples(List<TrafficFrame> batch) {
+        List<TrafficRollupService.Sample> samples = new ArrayList<>(batch.size());
+        ZoneId zone = ZoneId.systemDefault();
+        for (TrafficFrame data : batch) {
+            LocalDateTime dateTime = LocalDateTime.ofInstant(
+                    Instant.ofEpochMilli(toSecond(data.getTimestampMillis())), zone);
+            samples.add(new TrafficRollupService.Sample(data.getCameraId(), dateTime,
+                    toColumnScale(data.getTotalVolume()), toColumnScale(data.speed(TrafficFrame.CAR))));
+        }
+        return samples;
+    }
+
+    /**
+     * 截断到秒，避免 DATETIME 列对毫秒四舍五入后落入下一分钟的汇总桶
+     */
+    private static long toSecond(long millis) {
+        return millis - Math.floorMod(millis, 1000L);
+    }
+
+    /**
+     * speed DECIMAL(5,2) 和 volume DECIMAL(10,2) 写入时的取值
+     */
+    private static double toColumnScale(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP).doubleValue();
+    }
+}
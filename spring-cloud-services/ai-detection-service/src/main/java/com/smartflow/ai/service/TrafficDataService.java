@@ -1,20 +1,38 @@
 package com.smartflow.ai.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartflow.ai.archive.ArchiveColumn;
+import com.smartflow.ai.archive.ArchiveFilter;
+import com.smartflow.ai.archive.TrafficArchive;
+import com.smartflow.ai.dto.ArchiveAggregateDTO;
 import com.smartflow.ai.dto.TrafficDataDTO;
+import com.smartflow.ai.dto.TrafficSummaryDTO;
 import com.smartflow.ai.entity.TrafficData;
+import com.smartflow.ai.exception.BadRequestException;
+import com.smartflow.ai.mapper.TrafficDataMapper;
+import com.smartflow.ai.messaging.DetectionTopics;
+import com.smartflow.ai.messaging.RecordPublisher;
 import com.smartflow.ai.repository.TrafficDataRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.BeanUtils;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 交通数据服务类
@@ -25,11 +43,62 @@ import java.util.stream.Collectors;
 public class TrafficDataService {
     
     private final TrafficDataRepository trafficDataRepository;
-    private final RedisTemplate<String, Object> redisTemplate;
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final RecordPublisher recordPublisher;
+    private final KeysetPaging keysetPaging;
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
+    private final TrafficRollupService trafficRollupService;
+    private final TieredCache tieredCache;
+    private final TrafficDataMapper trafficDataMapper;
+    private final TrafficArchive trafficArchive;
     
     private static final String REDIS_KEY_PREFIX = "traffic:data:";
-    private static final String KAFKA_TOPIC = "traffic-data-topic";
+    private static final String KAFKA_TOPIC = DetectionTopics.TRAFFIC_DATA;
+    
+    private static final int EXPORT_FLUSH_ROWS = 500;
+    private static final String CSV_HEADER = "id,cameraId,dateTime,pedestrianCount,carCount,bicycleCount,busCount,"
+            + "motorcycleCount,truckCount,pedestrianSpeed,carSpeed,bicycleSpeed,busSpeed,motorcycleSpeed,"
+            + "truckSpeed,volume,congestionLevel\n";
+    
+    private TieredCache.Region<TrafficData, TrafficDataDTO> cache;
+    
+    /**
+     * 导出格式
+     */
+    public enum ExportFormat {
+        NDJSON("application/x-ndjson"),
+        CSV("text/csv;charset=UTF-8");
+        
+        private final String contentType;
+        
+        ExportFormat(String contentType) {
+            this.contentType = contentType;
+        }
+        
+        public String getContentType() {
+            return contentType;
+        }
+        
+        /**
+         * 按名称查找，不区分大小写
+         *
+         * @throws BadRequestException 不支持的格式
+         */
+        public static ExportFormat parse(String name) {
+            for (ExportFormat format : values()) {
+                if (format.name().equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            throw new BadRequestException("不支持的导出格式: " + name + "，可选 ndjson 或 csv");
+        }
+    }
+    
+    @PostConstruct
+    public void initCache() {
+        cache = tieredCache.region("traffic-data", REDIS_KEY_PREFIX, Duration.ofHours(1),
+                trafficDataRepository::findById, trafficDataMapper::toDto);
+    }
     
     /**
      * 保存交通数据
@@ -38,91 +107,125 @@ public class TrafficDataService {
     public TrafficDataDTO saveTrafficData(TrafficDataDTO trafficDataDTO) {
         log.info("保存交通数据: {}", trafficDataDTO);
         
-        TrafficData trafficData = new TrafficData();
-        BeanUtils.copyProperties(trafficDataDTO, trafficData);
+        TrafficData trafficData = trafficDataMapper.toEntity(trafficDataDTO);
         
         TrafficData savedData = trafficDataRepository.save(trafficData);
+        trafficRollupService.apply(Collections.singletonList(toSample(savedData)));
         
-        // 缓存到Redis
-        String redisKey = REDIS_KEY_PREFIX + savedData.getId();
-        redisTemplate.opsForValue().set(redisKey, savedData, 1, TimeUnit.HOURS);
+        // 缓存到本地和Redis
+        cache.put(savedData.getId(), savedData);
         
-        // 发送到Kafka
-        try {
-            kafkaTemplate.send(KAFKA_TOPIC, "traffic-data", convertToJson(savedData));
-            log.info("交通数据已发送到Kafka主题: {}", KAFKA_TOPIC);
-        } catch (Exception e) {
-            log.error("发送交通数据到Kafka失败", e);
-        }
+        TrafficDataDTO result = trafficDataMapper.toDto(savedData);
+        
+        // 写入发件箱，随事务提交后发送到Kafka
+        recordPublisher.stage(KAFKA_TOPIC, String.valueOf(savedData.getId()), result);
         
-        return convertToDTO(savedData);
+        return result;
     }
     
     /**
      * 根据ID查询交通数据
      */
     public TrafficDataDTO getTrafficDataById(Long id) {
-        // 先从Redis缓存中获取
-        String redisKey = REDIS_KEY_PREFIX + id;
-        TrafficData cachedData = (TrafficData) redisTemplate.opsForValue().get(redisKey);
-        
-        if (cachedData != null) {
-            log.debug("从Redis缓存获取交通数据: {}", id);
-            return convertToDTO(cachedData);
+        // 依次从本地缓存、Redis、数据库获取
+        TrafficDataDTO data = cache.get(id);
+        if (data == null) {
+            throw new RuntimeException("交通数据不存在: " + id);
         }
-        
-        // 从数据库查询
-        TrafficData trafficData = trafficDataRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("交通数据不存在: " + id));
-        
-        // 缓存到Redis
-        redisTemplate.opsForValue().set(redisKey, trafficData, 1, TimeUnit.HOURS);
-        
-        return convertToDTO(trafficData);
+        return data;
     }
     
     /**
      * 根据时间范围查询交通数据
      */
-    public List<TrafficDataDTO> getTrafficDataByTimeRange(LocalDateTime startTime, LocalDateTime endTime) {
-        List<TrafficData> trafficDataList = trafficDataRepository.findByDateTimeBetweenOrderByDateTimeDesc(startTime, endTime);
-        return trafficDataList.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public List<TrafficSummaryDTO> getTrafficDataByTimeRange(LocalDateTime startTime, LocalDateTime endTime,
+                                                             Long beforeId, Integer size) {
+        return trafficDataRepository.findSummariesByTimeRange(startTime, endTime,
+                KeysetPaging.cursor(beforeId), keysetPaging.limit(size));
     }
     
     /**
      * 获取最新的交通数据
      */
-    public List<TrafficDataDTO> getLatestTrafficData() {
-        List<TrafficData> trafficDataList = trafficDataRepository.findLatestTrafficData();
-        return trafficDataList.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public List<TrafficSummaryDTO> getLatestTrafficData(Long beforeId, Integer size) {
+        return trafficDataRepository.findLatestSummaries(KeysetPaging.cursor(beforeId), keysetPaging.limit(size));
     }
     
     /**
      * 根据拥堵级别查询交通数据
      */
-    public List<TrafficDataDTO> getTrafficDataByCongestionLevel(Integer congestionLevel) {
-        List<TrafficData> trafficDataList = trafficDataRepository.findByCongestionLevelOrderByDateTimeDesc(congestionLevel);
-        return trafficDataList.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public List<TrafficSummaryDTO> getTrafficDataByCongestionLevel(Integer congestionLevel, Long beforeId, Integer size) {
+        return trafficDataRepository.findSummariesByCongestionLevel(congestionLevel,
+                KeysetPaging.cursor(beforeId), keysetPaging.limit(size));
+    }
+    
+    /**
+     * 流式导出时间范围内的交通数据
+     * 按ID升序逐行写出并及时分离实体，内存占用与时间窗口长度无关；
+     * 每行都带ID，中断后以已收到的最后一个ID作为 afterId 续传
+     *
+     * @return 导出行数
+     */
+    @Transactional(readOnly = true)
+    public long exportTrafficData(LocalDateTime startTime, LocalDateTime endTime, Long afterId,
+                                  ExportFormat format, OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        if (format == ExportFormat.CSV) {
+            writer.write(CSV_HEADER);
+        }
+        long count = 0;
+        try (Stream<TrafficData> rows = trafficDataRepository.streamByTimeRange(startTime, endTime,
+                afterId != null ? afterId : 0L)) {
+            Iterator<TrafficData> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                TrafficData row = iterator.next();
+                if (format == ExportFormat.CSV) {
+                    writeCsvRow(writer, row);
+                } else {
+                    writer.write(objectMapper.writeValueAsString(trafficDataMapper.toDto(row)));
+                    writer.write('\n');
+                }
+                entityManager.detach(row);
+                if (++count % EXPORT_FLUSH_ROWS == 0) {
+                    writer.flush();
+                }
+            }
+        }
+        writer.flush();
+        log.info("导出交通数据 {} 条: {} - {}, afterId={}", count, startTime, endTime, afterId);
+        return count;
     }
     
     /**
-     * 获取平均交通量
+     * 获取平均交通量，由汇总桶计算
      */
-    public Double getAverageVolume(LocalDateTime startTime, LocalDateTime endTime) {
-        return trafficDataRepository.getAverageVolumeByTimeRange(startTime, endTime);
+    public Double getAverageVolume(LocalDateTime startTime, LocalDateTime endTime, Long cameraId) {
+        return trafficRollupService.averageVolume(startTime, endTime, cameraId);
     }
     
     /**
-     * 获取平均车速
+     * 获取平均车速，由汇总桶计算
      */
-    public Double getAverageCarSpeed(LocalDateTime startTime, LocalDateTime endTime) {
-        return trafficDataRepository.getAverageCarSpeedByTimeRange(startTime, endTime);
+    public Double getAverageCarSpeed(LocalDateTime startTime, LocalDateTime endTime, Long cameraId) {
+        return trafficRollupService.averageCarSpeed(startTime, endTime, cameraId);
+    }
+    
+    /**
+     * 统计归档的历史交通数据
+     *
+     * @param column 统计的列，DTO字段名或数据库列名
+     */
+    public ArchiveAggregateDTO getArchivedAggregate(String column, LocalDateTime startTime, LocalDateTime endTime,
+                                                    Long cameraId, Integer minCongestionLevel,
+                                                    Integer maxCongestionLevel) {
+        ArchiveColumn archiveColumn;
+        try {
+            archiveColumn = ArchiveColumn.parse(column);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+        return trafficArchive.aggregate(archiveColumn, startTime, endTime, cameraId,
+                ArchiveFilter.between(ArchiveColumn.CONGESTION_LEVEL, minCongestionLevel, maxCongestionLevel));
     }
     
     /**
@@ -130,34 +233,39 @@ public class TrafficDataService {
      */
     @Transactional
     public void deleteTrafficData(Long id) {
-        trafficDataRepository.deleteById(id);
+        TrafficData trafficData = trafficDataRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("交通数据不存在: " + id));
+        trafficDataRepository.delete(trafficData);
+        trafficRollupService.retract(Collections.singletonList(toSample(trafficData)));
         
-        // 从Redis缓存中删除
-        String redisKey = REDIS_KEY_PREFIX + id;
-        redisTemplate.delete(redisKey);
+        // 从本地和Redis缓存中删除，并通知其他实例
+        cache.evict(id);
         
         log.info("删除交通数据: {}", id);
     }
     
-    /**
-     * 转换为DTO
-     */
-    private TrafficDataDTO convertToDTO(TrafficData trafficData) {
-        TrafficDataDTO dto = new TrafficDataDTO();
-        BeanUtils.copyProperties(trafficData, dto);
-        return dto;
+    private static TrafficRollupService.Sample toSample(TrafficData data) {
+        return new TrafficRollupService.Sample(data.getCameraId(), data.getDateTime(),
+                toDouble(data.getVolume()), toDouble(data.getCarSpeed()));
     }
     
-    /**
-     * 转换为JSON字符串
-     */
-    private String convertToJson(TrafficData trafficData) {
-        // 这里可以使用Jackson或其他JSON库
-        // 为了简化，这里返回一个简单的字符串
-        return String.format("{\"id\":%d,\"dateTime\":\"%s\",\"volume\":%s}", 
-                trafficData.getId(), 
-                trafficData.getDateTime(), 
-                trafficData.getVolume());
+    private static Double toDouble(BigDecimal value) {
+        return value != null ? value.doubleValue() : null;
+    }
+    
+    private void writeCsvRow(Writer writer, TrafficData row) throws IOException {
+        Object[] values = {row.getId(), row.getCameraId(), row.getDateTime(), row.getPedestrianCount(), row.getCarCount(),
+                row.getBicycleCount(), row.getBusCount(), row.getMotorcycleCount(), row.getTruckCount(),
+                row.getPedestrianSpeed(), row.getCarSpeed(), row.getBicycleSpeed(), row.getBusSpeed(),
+                row.getMotorcycleSpeed(), row.getTruckSpeed(), row.getVolume(), row.getCongestionLevel()};
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writer.write(values[i].toString());
+            }
+        }
+        writer.write('\n');
     }
 }
-
@@ -0,0 +1,211 @@
+package com.smartflow.ai.service;
+
+import com.smartflow.ai.archive.TrafficArchive;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * traffic_data 按天分区管理
+ * 表按 TO_DAYS(date_time) 做 RANGE 分区，分区 pYYYYMMDD 存放当天（首个分区还包含更早）的数据，
+ * pmax 兜底存放尚未建分区的未来数据；带 date_time 范围条件的查询由 MySQL 裁剪到相关分区。
+ * 启动时把未分区的表转换为分区表（主键改为 (id, date_time)，大表转换需要较长时间），
+ * 每天定时预建未来分区，超过保留期的分区先写入列式归档（TrafficArchive）再删除；
+ * 多实例通过 MySQL 命名锁保证同一时间只有一个实例执行
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+@RequiredArgsConstructor
+public class TrafficPartitionManager implements ApplicationRunner {
+
+    private static final String TABLE = "traffic_data";
+    private static final String MAX_PARTITION = "pmax";
+    private static final String LOCK_NAME = "ai-detection:traffic-partitions";
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMMdd");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TrafficArchive trafficArchive;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.detection.partitioning.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.detection.partitioning.retention-days:90}")
+    private int retentionDays;
+
+    @Value("${ai.detection.partitioning.future-days:3}")
+    private int futureDays;
+
+    @Value("${ai.detection.partitioning.archive-before-drop:true}")
+    private boolean archiveBeforeDrop;
+
+    private Counter droppedCounter;
+    private Counter archivedRowsCounter;
+
+    @PostConstruct
+    public void init() {
+        droppedCounter = Counter.builder("ai.detection.partitions.dropped")
+                .description("超过保留期被删除的交通数据分区数")
+                .register(meterRegistry);
+        archivedRowsCounter = Counter.builder("ai.detection.partitions.archived.rows")
+                .description("删除分区前写入列式归档的行数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 启动时确保表已分区并建好未来分区，过期分区留给定时任务处理
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        withLock(jdbc -> {
+            ensurePartitioned(jdbc);
+            createFuturePartitions(jdbc, LocalDate.now());
+        });
+    }
+
+    @Scheduled(cron = "${ai.detection.partitioning.cron:0 10 0 * * *}")
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            withLock(jdbc -> {
+                LocalDate today = LocalDate.now();
+                ensurePartitioned(jdbc);
+                createFuturePartitions(jdbc, today);
+                expirePartitions(jdbc, today);
+            });
+        } catch (Exception e) {
+            log.error("交通数据分区维护失败", e);
+        }
+    }
+
+    /**
+     * 分区维护使用同一个连接持有命名锁，其他实例拿不到锁时跳过本轮
+     */
+    private void withLock(Consumer<JdbcTemplate> work) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            JdbcTemplate jdbc = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+            Integer locked = jdbc.queryForObject("SELECT GET_LOCK(?, 0)", Integer.class, LOCK_NAME);
+            if (locked == null || locked != 1) {
+                log.info("其他实例正在维护交通数据分区，跳过本轮");
+                return null;
+            }
+            try {
+                work.accept(jdbc);
+            } finally {
+                jdbc.queryForObject("SELECT RELEASE_LOCK(?)", Integer.class, LOCK_NAME);
+            }
+            return null;
+        });
+    }
+
+    private void ensurePartitioned(JdbcTemplate jdbc) {
+        if (!partitionNames(jdbc).isEmpty()) {
+            return;
+        }
+        log.info("{} 尚未分区，开始转换为按天分区表", TABLE);
+        // 分区表的每个唯一键都必须包含分区列
+        Integer pkHasDateTime = jdbc.queryForObject("SELECT COUNT(*) FROM information_schema.key_column_usage "
+                + "WHERE table_schema = DATABASE() AND table_name = ? AND constraint_name = 'PRIMARY' "
+                + "AND column_name = 'date_time'", Integer.class, TABLE);
+        if (pkHasDateTime == null || pkHasDateTime == 0) {
+            jdbc.execute("ALTER TABLE " + TABLE + " DROP PRIMARY KEY, ADD PRIMARY KEY (id, date_time)");
+        }
+        jdbc.execute("ALTER TABLE " + TABLE + " PARTITION BY RANGE (TO_DAYS(date_time)) "
+                + "(PARTITION " + MAX_PARTITION + " VALUES LESS THAN MAXVALUE)");
+    }
+
+    /**
+     * 从最后一个日分区之后建到 today + futureDays；首次建分区时第一个分区收纳保留期之前的全部历史数据
+     */
+    private void createFuturePartitions(JdbcTemplate jdbc, LocalDate today) {
+        LocalDate last = null;
+        for (String name : partitionNames(jdbc)) {
+            LocalDate day = partitionDay(name);
+            if (day != null && (last == null || day.isAfter(last))) {
+                last = day;
+            }
+        }
+        LocalDate from = last != null ? last.plusDays(1) : today.minusDays(retentionDays + 1L);
+        LocalDate until = today.plusDays(futureDays);
+        if (from.isAfter(until)) {
+            return;
+        }
+
+        StringBuilder sql = new StringBuilder("ALTER TABLE ").append(TABLE)
+                .append(" REORGANIZE PARTITION ").append(MAX_PARTITION).append(" INTO (");
+        int created = 0;
+        for (LocalDate day = from; !day.isAfter(until); day = day.plusDays(1)) {
+            sql.append("PARTITION ").append(PARTITION_NAME.format(day))
+                    .append(" VALUES LESS THAN (TO_DAYS('").append(day.plusDays(1)).append("')), ");
+            created++;
+        }
+        sql.append("PARTITION ").append(MAX_PARTITION).append(" VALUES LESS THAN MAXVALUE)");
+        jdbc.execute(sql.toString());
+        log.info("{} 已新建 {} 个日分区: {} - {}", TABLE, created, from, until);
+    }
+
+    /**
+     * 删除整天都早于 today - retentionDays 的分区，归档失败时保留分区等待下次重试
+     */
+    private void expirePartitions(JdbcTemplate jdbc, LocalDate today) {
+        LocalDate cutoff = today.minusDays(retentionDays);
+        for (String name : partitionNames(jdbc)) {
+            LocalDate day = partitionDay(name);
+            if (day == null || !day.isBefore(cutoff)) {
+                continue;
+            }
+            if (archiveBeforeDrop) {
+                long rows = trafficArchive.archivePartition(jdbc, name);
+                archivedRowsCounter.increment(rows);
+                log.info("分区 {} 已归档 {} 行", name, rows);
+            }
+            jdbc.execute("ALTER TABLE " + TABLE + " DROP PARTITION " + name);
+            droppedCounter.increment();
+            log.info("分区 {} 超过保留期 {} 天，已删除", name, retentionDays);
+        }
+    }
+
+    private static List<String> partitionNames(JdbcTemplate jdbc) {
+        return jdbc.queryForList("SELECT partition_name FROM information_schema.partitions "
+                + "WHERE table_schema = DATABASE() AND table_name = ? AND partition_name IS NOT NULL "
+                + "ORDER BY partition_ordinal_position", String.class, TABLE);
+    }
+
+    /**
+     * 日分区名对应的日期，pmax 或不符合命名规则的分区返回null
+     */
+    private static LocalDate partitionDay(String name) {
+        if (MAX_PARTITION.equals(name)) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(name, PARTITION_NAME);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -1,23 +1,34 @@
 package com.smartflow.ai.service.impl;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.smartflow.ai.dto.TrafficInfoDto;
-import com.smartflow.ai.model.AccidentDetection;
-import com.smartflow.ai.model.TrafficData;
+import com.smartflow.ai.entity.AccidentDetection;
+import com.smartflow.ai.entity.TrafficData;
+import com.smartflow.ai.mapper.AccidentDetectionMapper;
+import com.smartflow.ai.messaging.DetectionTopics;
+import com.smartflow.ai.messaging.RecordPublisher;
+import com.smartflow.ai.model.TrafficFrame;
 import com.smartflow.ai.repository.AccidentDetectionRepository;
 import com.smartflow.ai.repository.TrafficDataRepository;
+import com.smartflow.ai.service.AccidentCooldownTable;
+import com.smartflow.ai.service.AccidentDetectionService;
 import com.smartflow.ai.service.AiDetectionService;
+import com.smartflow.ai.service.FrameStore;
+import com.smartflow.ai.service.KeysetPaging;
+import com.smartflow.ai.service.LiveTrafficState;
+import com.smartflow.ai.service.TrafficDataBatchWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * AI检测服务实现类
@@ -30,23 +41,22 @@ public class AiDetectionServiceImpl implements AiDetectionService {
     
     private final TrafficDataRepository trafficDataRepository;
     private final AccidentDetectionRepository accidentDetectionRepository;
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final ObjectMapper objectMapper;
+    private final TrafficDataBatchWriter trafficDataBatchWriter;
+    private final AccidentCooldownTable accidentCooldownTable;
+    private final AccidentDetectionService accidentDetectionService;
+    private final FrameStore frameStore;
+    private final KeysetPaging keysetPaging;
+    private final LiveTrafficState liveTrafficState;
+    private final RecordPublisher recordPublisher;
+    private final AccidentDetectionMapper accidentDetectionMapper;
+    private final PlatformTransactionManager transactionManager;
     
-    @Value("${ai.detection.confidence-threshold:0.85}")
-    private double confidenceThreshold;
-    
-    @Value("${ai.detection.accident-cooldown:900}")
-    private int accidentCooldown;
+    private TransactionTemplate transactionTemplate;
     
-    private final AtomicBoolean isDetectionRunning = new AtomicBoolean(false);
-    private LocalDateTime lastAccidentTime = LocalDateTime.now().minusHours(1);
+    private static final String DEFAULT_LOCATION = "Intersection A";
     
-    // 模拟的车辆类型映射
-    private final Map<Integer, String> ID2TRAFFIC_CLASS = Map.of(
-        0, "person", 1, "bicycle", 2, "car", 3, "motorcycle", 
-        5, "bus", 7, "truck"
-    );
+    @Value("${ai.detection.confidence-threshold:0.85}")
+    private double confidenceThreshold;
     
     private final Map<Integer, String> ID2ACCIDENT_CLASS = Map.of(
         0, "Bike, Bike", 1, "Bike, Object", 2, "Bike, Pedestrian",
@@ -55,61 +65,80 @@ public class AiDetectionServiceImpl implements AiDetectionService {
     
     @PostConstruct
     public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
         log.info("AI Detection Service initialized");
     }
     
     @Override
-    @Async
-    public void startVideoDetection() {
-        if (isDetectionRunning.compareAndSet(false, true)) {
-            log.info("Starting video detection...");
-            // 模拟视频检测过程
-            simulateVideoDetection();
-        } else {
-            log.warn("Video detection is already running");
-        }
+    public TrafficInfoDto processFrame(byte[] imageData) {
+        return processFrame(null, imageData);
     }
     
     @Override
-    public void stopVideoDetection() {
-        if (isDetectionRunning.compareAndSet(true, false)) {
-            log.info("Stopping video detection...");
-        } else {
-            log.warn("Video detection is not running");
-        }
+    public TrafficInfoDto processFrame(Long cameraId, byte[] imageData) {
+        return processFrame(cameraId, ByteBuffer.wrap(imageData));
     }
     
     @Override
-    public TrafficInfoDto processFrame(byte[] imageData) {
+    public TrafficInfoDto processFrame(Long cameraId, ByteBuffer frame) {
+        TrafficFrame result = new TrafficFrame();
+        processFrame(cameraId, frame, result);
+        return result.toDto();
+    }
+    
+    @Override
+    public void processFrame(Long cameraId, ByteBuffer frame, TrafficFrame result) {
         // 模拟AI处理，生成随机交通数据
-        TrafficInfoDto trafficInfo = generateMockTrafficData();
+        generateMockTrafficData(cameraId, result);
         
-        // 保存到数据库
-        saveTrafficData(trafficInfo);
+        // 更新内存中的实时交通状态
+        liveTrafficState.update(cameraId, result);
         
-        // 发送到Kafka
-        sendTrafficDataToKafka(trafficInfo);
+        // 提交到批量写入队列，由独立写线程批量落库
+        saveTrafficData(result);
         
-        return trafficInfo;
+        // 发送到Kafka
+        sendTrafficDataToKafka(result);
     }
     
     @Override
     public AccidentDetection detectAccident(byte[] imageData) {
-        // 检查事故冷却时间
-        if (LocalDateTime.now().isBefore(lastAccidentTime.plusSeconds(accidentCooldown))) {
+        return detectAccident(null, DEFAULT_LOCATION, imageData);
+    }
+    
+    @Override
+    public AccidentDetection detectAccident(Long cameraId, String location, byte[] imageData) {
+        return detectAccident(cameraId, location, ByteBuffer.wrap(imageData));
+    }
+    
+    @Override
+    public AccidentDetection detectAccident(Long cameraId, String location, ByteBuffer frame) {
+        // 检查该摄像头的事故冷却时间，未指定摄像头时按位置区分
+        Object cooldownKey = cameraId != null ? cameraId : (location != null ? location : DEFAULT_LOCATION);
+        long now = System.currentTimeMillis();
+        if (accidentCooldownTable.isCoolingDown(cooldownKey, now)) {
             return null;
         }
         
         // 模拟事故检测（随机生成）
         if (Math.random() < 0.01) { // 1% 概率检测到事故
-            AccidentDetection accident = generateMockAccident(imageData);
-            accidentDetectionRepository.save(accident);
-            lastAccidentTime = LocalDateTime.now();
-            
-            // 发送事故通知到Kafka
-            sendAccidentNotificationToKafka(accident);
-            
-            return accident;
+            // 同一摄像头并发检测到事故时只保留一条
+            if (!accidentCooldownTable.tryStartCooldown(cooldownKey, now)) {
+                return null;
+            }
+            try {
+                AccidentDetection accident = generateMockAccident(cameraId, location, frame);
+                // 事故记录和通知在同一事务中写入，通知经发件箱发送到Kafka
+                transactionTemplate.executeWithoutResult(status -> {
+                    accidentDetectionRepository.save(accident);
+                    sendAccidentNotificationToKafka(accident);
+                });
+                return accident;
+            } catch (RuntimeException e) {
+                // 事故未能保存，释放冷却窗口，下一帧仍可检测
+                accidentCooldownTable.cancelCooldown(cooldownKey, now);
+                throw e;
+            }
         }
         
         return null;
@@ -117,14 +146,25 @@ public class AiDetectionServiceImpl implements AiDetectionService {
     
     @Override
     public TrafficInfoDto getCurrentTrafficInfo() {
-        // 从Redis或数据库获取最新数据
-        return generateMockTrafficData();
+        // 从内存中的滑动窗口获取，不访问数据库
+        return liveTrafficState.snapshotCombined();
+    }
+    
+    @Override
+    public TrafficInfoDto getCurrentTrafficInfo(Long cameraId) {
+        return liveTrafficState.snapshot(cameraId);
     }
     
     @Override
-    public List<TrafficData> getHistoricalTrafficData(int hours) {
+    public Map<Long, TrafficInfoDto> getAllCurrentTrafficInfo() {
+        return liveTrafficState.snapshotAll();
+    }
+    
+    @Override
+    public List<TrafficData> getHistoricalTrafficData(int hours, Long beforeId, Integer size) {
         LocalDateTime startTime = LocalDateTime.now().minusHours(hours);
-        return trafficDataRepository.findByDateTimeAfter(startTime);
+        return trafficDataRepository.findByDateTimeAfterAndIdLessThanOrderByIdDesc(startTime,
+                KeysetPaging.cursor(beforeId), keysetPaging.limit(size));
     }
     
     @Override
@@ -135,85 +175,39 @@ public class AiDetectionServiceImpl implements AiDetectionService {
     
     @Override
     public void updateAccidentStatus(Long accidentId, String status) {
-        Optional<AccidentDetection> accidentOpt = accidentDetectionRepository.findById(accidentId);
-        if (accidentOpt.isPresent()) {
-            AccidentDetection accident = accidentOpt.get();
-            accident.setStatus(status);
-            accidentDetectionRepository.save(accident);
-            log.info("Updated accident {} status to {}", accidentId, status);
-        }
-    }
-    
-    private void simulateVideoDetection() {
-        new Thread(() -> {
-            while (isDetectionRunning.get()) {
-                try {
-                    // 模拟处理视频帧
-                    processFrame(new byte[0]);
-                    
-                    // 模拟事故检测
-                    detectAccident(new byte[0]);
-                    
-                    Thread.sleep(2000); // 2秒间隔
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                } catch (Exception e) {
-                    log.error("Error in video detection simulation", e);
-                }
-            }
-        }).start();
+        // 经缓存区域更新，其他实例同时收到失效通知
+        accidentDetectionService.updateAccidentStatus(accidentId, status);
+        log.info("Updated accident {} status to {}", accidentId, status);
     }
     
-    private TrafficInfoDto generateMockTrafficData() {
-        Map<String, TrafficInfoDto.VehicleInfo> vehicles = new HashMap<>();
+    private void generateMockTrafficData(Long cameraId, TrafficFrame result) {
+        result.reset(cameraId, System.currentTimeMillis());
         
         // 生成随机车辆数据
-        vehicles.put("person", new TrafficInfoDto.VehicleInfo(
-            (int) (Math.random() * 10), Math.random() * 5
-        ));
-        vehicles.put("car", new TrafficInfoDto.VehicleInfo(
-            (int) (Math.random() * 50), Math.random() * 30 + 20
-        ));
-        vehicles.put("bicycle", new TrafficInfoDto.VehicleInfo(
-            (int) (Math.random() * 15), Math.random() * 15 + 10
-        ));
-        vehicles.put("bus", new TrafficInfoDto.VehicleInfo(
-            (int) (Math.random() * 5), Math.random() * 20 + 15
-        ));
-        vehicles.put("motorcycle", new TrafficInfoDto.VehicleInfo(
-            (int) (Math.random() * 20), Math.random() * 25 + 15
-        ));
-        vehicles.put("truck", new TrafficInfoDto.VehicleInfo(
-            (int) (Math.random() * 8), Math.random() * 25 + 15
-        ));
+        result.set(TrafficFrame.PERSON, (int) (Math.random() * 10), Math.random() * 5);
+        result.set(TrafficFrame.CAR, (int) (Math.random() * 50), Math.random() * 30 + 20);
+        result.set(TrafficFrame.BICYCLE, (int) (Math.random() * 15), Math.random() * 15 + 10);
+        result.set(TrafficFrame.BUS, (int) (Math.random() * 5), Math.random() * 20 + 15);
+        result.set(TrafficFrame.MOTORCYCLE, (int) (Math.random() * 20), Math.random() * 25 + 15);
+        result.set(TrafficFrame.TRUCK, (int) (Math.random() * 8), Math.random() * 25 + 15);
         
         // 计算总流量和拥堵等级
-        double totalVolume = vehicles.values().stream()
-            .mapToDouble(v -> v.getCount() * v.getAverageSpeed())
-            .sum();
-        
-        int congestionLevel = calculateCongestionLevel(totalVolume);
-        String[] congestionLevels = {"Low", "Medium", "High"};
-        
-        return new TrafficInfoDto(vehicles, totalVolume, congestionLevel, congestionLevels[congestionLevel]);
+        result.computeTotals();
     }
     
-    private int calculateCongestionLevel(double volume) {
-        if (volume < 100) return 0; // Low
-        if (volume < 200) return 1; // Medium
-        return 2; // High
-    }
-    
-    private AccidentDetection generateMockAccident(byte[] imageData) {
+    private AccidentDetection generateMockAccident(Long cameraId, String location, ByteBuffer frame) {
         AccidentDetection accident = new AccidentDetection();
+        accident.setCameraId(cameraId);
         accident.setDateTime(LocalDateTime.now());
-        accident.setImageData(imageData);
+        // 帧直接从缓冲区写入帧存储，只保存引用
+        if (frame.hasRemaining()) {
+            accident.setImageRef(frameStore.put(frame));
+        }
         accident.setInvolvedVehicles(getRandomAccidentType());
-        accident.setConfidenceScore(0.85 + Math.random() * 0.14);
-        accident.setSeverity("Medium");
-        accident.setStatus("Pending");
-        accident.setLocation("Intersection A");
+        accident.setConfidenceScore(BigDecimal.valueOf(0.85 + Math.random() * 0.14).setScale(2, RoundingMode.HALF_UP));
+        accident.setSeverity(AccidentDetection.Severity.MEDIUM);
+        accident.setStatus(AccidentDetection.Status.PENDING);
+        accident.setLocation(location != null ? location : DEFAULT_LOCATION);
         accident.setDescription("Vehicle collision detected");
         
         return accident;
@@ -224,41 +218,23 @@ public class AiDetectionServiceImpl implements AiDetectionService {
         return accidentTypes.get((int) (Math.random() * accidentTypes.size()));
     }
     
-    private void saveTrafficData(TrafficInfoDto trafficInfo) {
+    private void saveTrafficData(TrafficFrame result) {
         try {
-            TrafficData trafficData = new TrafficData();
-            trafficData.setDateTime(LocalDateTime.now());
-            
-            Map<String, TrafficInfoDto.VehicleInfo> vehicles = trafficInfo.getVehicles();
-            trafficData.setPedestrianCount(vehicles.get("person").getCount());
-            trafficData.setCarCount(vehicles.get("car").getCount());
-            trafficData.setBicycleCount(vehicles.get("bicycle").getCount());
-            trafficData.setBusCount(vehicles.get("bus").getCount());
-            trafficData.setMotorcycleCount(vehicles.get("motorcycle").getCount());
-            trafficData.setTruckCount(vehicles.get("truck").getCount());
-            
-            trafficData.setPedestrianSpeed(vehicles.get("person").getAverageSpeed());
-            trafficData.setCarSpeed(vehicles.get("car").getAverageSpeed());
-            trafficData.setBicycleSpeed(vehicles.get("bicycle").getAverageSpeed());
-            trafficData.setBusSpeed(vehicles.get("bus").getAverageSpeed());
-            trafficData.setMotorcycleSpeed(vehicles.get("motorcycle").getAverageSpeed());
-            trafficData.setTruckSpeed(vehicles.get("truck").getAverageSpeed());
-            
-            trafficData.setVolume(trafficInfo.getTotalVolume());
-            trafficData.setCongestionLevel(trafficInfo.getCongestionLevel());
-            
-            trafficDataRepository.save(trafficData);
-            log.debug("Saved traffic data: volume={}, congestion={}", 
-                trafficInfo.getTotalVolume(), trafficInfo.getCongestionLevelText());
+            // 检测结果实例由调用方复用，入队的是副本
+            if (trafficDataBatchWriter.submit(result.copy())) {
+                log.debug("Queued traffic data: volume={}, congestion={}",
+                    result.getTotalVolume(), result.getCongestionLevel());
+            }
         } catch (Exception e) {
             log.error("Error saving traffic data", e);
         }
     }
     
-    private void sendTrafficDataToKafka(TrafficInfoDto trafficInfo) {
+    private void sendTrafficDataToKafka(TrafficFrame result) {
         try {
-            String message = objectMapper.writeValueAsString(trafficInfo);
-            kafkaTemplate.send("traffic-data", message);
+            // 按摄像头分区，同一摄像头的帧保持顺序
+            String key = result.getCameraId() != null ? result.getCameraId().toString() : null;
+            recordPublisher.publish(DetectionTopics.TRAFFIC_FRAMES, key, result);
             log.debug("Sent traffic data to Kafka");
         } catch (Exception e) {
             log.error("Error sending traffic data to Kafka", e);
@@ -266,13 +242,8 @@ public class AiDetectionServiceImpl implements AiDetectionService {
     }
     
     private void sendAccidentNotificationToKafka(AccidentDetection accident) {
-        try {
-            String message = objectMapper.writeValueAsString(accident);
-            kafkaTemplate.send("accident-notifications", message);
-            log.info("Sent accident notification to Kafka: {}", accident.getId());
-        } catch (Exception e) {
-            log.error("Error sending accident notification to Kafka", e);
-        }
+        recordPublisher.stage(DetectionTopics.ACCIDENT_NOTIFICATIONS,
+            String.valueOf(accident.getId()), accidentDetectionMapper.toDto(accident));
+        log.info("Queued accident notification for Kafka: {}", accident.getId());
     }
 }
-
@@ -2,6 +2,7 @@ package com.smartflow.traffic.ai.client;
 
 import com.smartflow.traffic.ai.dto.VideoDataDTO;
 import com.smartflow.traffic.ai.dto.ApiResponse;
+import com.smartflow.traffic.ai.dto.CameraDTO;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.*;
 
@@ -57,39 +58,3 @@ public interface DataIngestionClient {
     ApiResponse<List<VideoDataDTO>> getVideoDataByCamera(@PathVariable("cameraId") Long cameraId,
                                                         @RequestParam(value = "limit", defaultValue = "10") Integer limit);
 }
-
-/**
- * 摄像头DTO
- */
-class CameraDTO {
-    private Long id;
-    private String name;
-    private String location;
-    private String ipAddress;
-    private Integer port;
-    private String status;
-    private String description;
-    
-    // Getters and Setters
-    public Long getId() { return id; }
-    public void setId(Long id) { this.id = id; }
-    
-    public String getName() { return name; }
-    public void setName(String name) { this.name = name; }
-    
-    public String getLocation() { return location; }
-    public void setLocation(String location) { this.location = location; }
-    
-    public String getIpAddress() { return ipAddress; }
-    public void setIpAddress(String ipAddress) { this.ipAddress = ipAddress; }
-    
-    public Integer getPort() { return port; }
-    public void setPort(Integer port) { this.port = port; }
-    
-    public String getStatus() { return status; }
-    public void setStatus(String status) { this.status = status; }
-    
-    public String getDescription() { return description; }
-    public void setDescription(String description) { this.description = description; }
-}
-
@@ -2,6 +2,7 @@ package com.smartflow.traffic.ai.client;
 
 import com.smartflow.traffic.ai.dto.VideoDataDTO;
 import com.smartflow.traffic.ai.dto.ApiResponse;
+import com.smartflow.traffic.ai.dto.CameraDTO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
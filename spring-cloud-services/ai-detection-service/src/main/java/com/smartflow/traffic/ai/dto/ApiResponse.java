@@ -0,0 +1,61 @@
+package com.smartflow.traffic.ai.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+/**
+ * API响应DTO
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ApiResponse<T> {
+
+    private boolean success;
+    private String message;
+    private T data;
+    private String code;
+    private Long timestamp;
+
+    public static <T> ApiResponse<T> success(T data) {
+        return ApiResponse.<T>builder()
+                .success(true)
+                .message("操作成功")
+                .data(data)
+                .code("200")
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+
+    public static <T> ApiResponse<T> success(String message, T data) {
+        return ApiResponse.<T>builder()
+                .success(true)
+                .message(message)
+                .data(data)
+                .code("200")
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+
+    public static <T> ApiResponse<T> error(String message) {
+        return ApiResponse.<T>builder()
+                .success(false)
+                .message(message)
+                .code("500")
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+
+    public static <T> ApiResponse<T> error(String message, String code) {
+        return ApiResponse.<T>builder()
+                .success(false)
+                .message(message)
+                .code(code)
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+}
+
@@ -0,0 +1,232 @@
+package com.smartflow.ai.archive;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 写入后再读取应得到原值和原空值位置；版本1的文件仍能读取
+ */
+class ColumnFileTest {
+
+    private static final int COLUMNS = ArchiveColumn.COLUMNS.length;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripKeepsValuesAndNulls() throws IOException {
+        ColumnFile.Rows rows = new ColumnFile.Rows();
+        // 超过缓冲区初始容量，覆盖扩容
+        int size = 3000;
+        for (int r = 0; r < size; r++) {
+            rows.add(row(r), rowNulls(r));
+        }
+        Path path = dir.resolve("camera-27.p20240318.sfc");
+
+        ColumnFile.write(path, 27L, rows);
+
+        try (ColumnFile file = ColumnFile.open(path)) {
+            assertThat(file.rowCount()).isEqualTo(size);
+            assertThat(file.cameraId()).isEqualTo(27L);
+            for (ArchiveColumn column : ArchiveColumn.COLUMNS) {
+                ColumnFile.ColumnData data = file.read(column);
+                for (int r = 0; r < size; r++) {
+                    boolean expectNull = rowNulls(r)[column.ordinal()];
+                    assertThat(data.isNull(r)).as("%s 第 %d 行", column, r).isEqualTo(expectNull);
+                    if (!expectNull) {
+                        assertThat(data.value(r)).as("%s 第 %d 行", column, r).isEqualTo(row(r)[column.ordinal()]);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void footerRangeIgnoresNulls() throws IOException {
+        ColumnFile.Rows rows = new ColumnFile.Rows();
+        long[] values = new long[COLUMNS];
+        boolean[] nulls = new boolean[COLUMNS];
+        values[ArchiveColumn.CAR_SPEED.ordinal()] = -500;
+        rows.add(values, nulls);
+        nulls[ArchiveColumn.CAR_SPEED.ordinal()] = true;
+        values[ArchiveColumn.CAR_SPEED.ordinal()] = 99_999;
+        rows.add(values, nulls);
+        nulls[ArchiveColumn.VOLUME.ordinal()] = true;
+        boolean[] allVolumeNull = nulls.clone();
+        rows.add(values, allVolumeNull);
+        Path path = dir.resolve("camera-1.sfc");
+
+        ColumnFile.write(path, 1L, rows);
+
+        try (ColumnFile file = ColumnFile.open(path)) {
+            assertThat(file.mayMatch(ArchiveFilter.between(ArchiveColumn.CAR_SPEED, -5, -5))).isTrue();
+            // 空值位置写入的 99999 不计入最大值
+            assertThat(file.mayMatch(ArchiveFilter.between(ArchiveColumn.CAR_SPEED, 100, null))).isFalse();
+        }
+
+        rows.clear();
+        rows.add(new long[COLUMNS], allVolumeNull);
+        ColumnFile.write(path, 1L, rows);
+        try (ColumnFile file = ColumnFile.open(path)) {
+            assertThat(file.mayMatch(ArchiveFilter.between(ArchiveColumn.VOLUME, null, null))).isFalse();
+            assertThat(file.read(ArchiveColumn.VOLUME).isNull(0)).isTrue();
+        }
+    }
+
+    @Test
+    void emptyFile() throws IOException {
+        Path path = dir.resolve("camera-2.sfc");
+
+        ColumnFile.write(path, 2L, new ColumnFile.Rows());
+
+        try (ColumnFile file = ColumnFile.open(path)) {
+            assertThat(file.rowCount()).isZero();
+            assertThat(file.cameraId()).isEqualTo(2L);
+            assertThat(file.mayMatch(ArchiveFilter.between(ArchiveColumn.ID, null, null))).isFalse();
+            assertThat(file.read(ArchiveColumn.ID)).isNotNull();
+        }
+    }
+
+    @Test
+    void readsVersionOneFileWithoutNullBitmap() throws IOException {
+        // 第三个ID的差值和车辆数都需要两个字节的变长整数
+        long[] ids = {2_000_000, 2_000_001, 2_000_130};
+        long[] carCounts = {0, -64, 250};
+        Path path = dir.resolve("camera-41.sfc");
+        Files.write(path, versionOneFile(41L, ids, carCounts));
+
+        try (ColumnFile file = ColumnFile.open(path)) {
+            assertThat(file.rowCount()).isEqualTo(3);
+            assertThat(file.cameraId()).isEqualTo(41L);
+            ColumnFile.ColumnData id = file.read(ArchiveColumn.ID);
+            ColumnFile.ColumnData carCount = file.read(ArchiveColumn.CAR_COUNT);
+            for (int r = 0; r < ids.length; r++) {
+                assertThat(id.isNull(r)).isFalse();
+                assertThat(id.value(r)).isEqualTo(ids[r]);
+                assertThat(carCount.isNull(r)).isFalse();
+                assertThat(carCount.value(r)).isEqualTo(carCounts[r]);
+            }
+            // 版本1文件中没有的列按全部为空读取
+            ColumnFile.ColumnData updatedAt = file.read(ArchiveColumn.UPDATED_AT);
+            assertThat(updatedAt.isNull(0)).isTrue();
+            assertThat(updatedAt.isNull(2)).isTrue();
+            assertThat(file.mayMatch(ArchiveFilter.between(ArchiveColumn.UPDATED_AT, null, null))).isFalse();
+            assertThat(file.mayMatch(ArchiveFilter.between(ArchiveColumn.CAR_COUNT, -64, -64))).isTrue();
+            assertThat(file.mayMatch(ArchiveFilter.between(ArchiveColumn.CAR_COUNT, 251, null))).isFalse();
+        }
+    }
+
+    @Test
+    void rejectsUnknownVersion() throws IOException {
+        Path path = dir.resolve("camera-6.sfc");
+        ColumnFile.write(path, 6L, new ColumnFile.Rows());
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[4] = 9;
+        Files.write(path, bytes);
+
+        assertThatThrownBy(() -> ColumnFile.open(path)).isInstanceOf(IOException.class);
+    }
+
+    private static long[] row(int r) {
+        long[] row = new long[COLUMNS];
+        for (int c = 0; c < COLUMNS; c++) {
+            row[c] = (r * 7L - 5000) * (c + 1);
+        }
+        row[ArchiveColumn.ID.ordinal()] = 1_000_000L + r;
+        row[ArchiveColumn.DATE_TIME.ordinal()] = 1_717_200_000L + r * 5L;
+        return row;
+    }
+
+    private static boolean[] rowNulls(int r) {
+        boolean[] nulls = new boolean[COLUMNS];
+        nulls[ArchiveColumn.CAR_SPEED.ordinal()] = r % 3 == 0;
+        nulls[ArchiveColumn.VOLUME.ordinal()] = r % 1000 == 999;
+        // 按差值存储的列中间出现空值
+        nulls[ArchiveColumn.UPDATED_AT.ordinal()] = r % 10 == 4;
+        return nulls;
+    }
+
+    /**
+     * 按版本1格式写一个只有 ID 和 CAR_COUNT 两列的文件：没有空值位图，页脚没有空值数
+     */
+    private static byte[] versionOneFile(long cameraId, long[] ids, long[] carCounts) throws IOException {
+        byte[] idBlock = deflate(zigzag(ids, true));
+        byte[] carBlock = deflate(zigzag(carCounts, false));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x53464341);
+        out.writeByte(1);
+        out.write(idBlock);
+        out.write(carBlock);
+
+        ByteArrayOutputStream footerBytes = new ByteArrayOutputStream();
+        DataOutputStream footer = new DataOutputStream(footerBytes);
+        footer.writeInt(ids.length);
+        footer.writeLong(cameraId);
+        footer.writeShort(2);
+        writeColumn(footer, ArchiveColumn.ID, 5, idBlock.length, zigzag(ids, true).length, ids);
+        writeColumn(footer, ArchiveColumn.CAR_COUNT, 5L + idBlock.length, carBlock.length,
+                zigzag(carCounts, false).length, carCounts);
+        footer.flush();
+        footerBytes.writeTo(out);
+        out.writeInt(footerBytes.size());
+        out.writeInt(0x53464341);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeColumn(DataOutputStream footer, ArchiveColumn column, long offset, int compressed,
+                                    int raw, long[] values) throws IOException {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (long value : values) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        footer.writeByte(column.ordinal());
+        footer.writeLong(offset);
+        footer.writeInt(compressed);
+        footer.writeInt(raw);
+        footer.writeLong(min);
+        footer.writeLong(max);
+    }
+
+    private static byte[] zigzag(long[] values, boolean delta) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long previous = 0;
+        for (long current : values) {
+            long value = delta ? current - previous : current;
+            previous = current;
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                out.write((int) ((zigzag & 0x7F) | 0x80));
+                zigzag >>>= 7;
+            }
+            out.write((int) zigzag);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,133 @@
+package com.smartflow.ai.mapper;
+
+import com.smartflow.ai.dto.AccidentDetectionDTO;
+import com.smartflow.ai.dto.TrafficDataDTO;
+import com.smartflow.ai.entity.AccidentDetection;
+import com.smartflow.ai.entity.TrafficData;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.springframework.beans.BeanUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 生成的映射器应与原先基于 BeanUtils.copyProperties 的转换结果一致
+ */
+class EntityDtoMapperTest {
+
+    private final TrafficDataMapper trafficDataMapper = Mappers.getMapper(TrafficDataMapper.class);
+    private final AccidentDetectionMapper accidentDetectionMapper = Mappers.getMapper(AccidentDetectionMapper.class);
+
+    @Test
+    void trafficDataToDtoMatchesBeanUtils() {
+        TrafficData entity = trafficData();
+
+        TrafficDataDTO expected = new TrafficDataDTO();
+        BeanUtils.copyProperties(entity, expected);
+
+        assertThat(trafficDataMapper.toDto(entity)).isEqualTo(expected);
+    }
+
+    @Test
+    void trafficDataToEntityMatchesBeanUtils() {
+        TrafficDataDTO dto = trafficDataMapper.toDto(trafficData());
+        dto.setCameraId(14L);
+        dto.setBusSpeed(null);
+
+        TrafficData expected = new TrafficData();
+        BeanUtils.copyProperties(dto, expected);
+
+        TrafficData actual = trafficDataMapper.toEntity(dto);
+        assertThat(actual).isEqualTo(expected);
+        assertThat(actual.getBusSpeed()).isNull();
+    }
+
+    @Test
+    void accidentDetectionToDtoUsesEnumNames() {
+        AccidentDetection entity = accidentDetection();
+
+        AccidentDetectionDTO dto = accidentDetectionMapper.toDto(entity);
+
+        assertThat(dto.getId()).isEqualTo(entity.getId());
+        assertThat(dto.getDateTime()).isEqualTo(entity.getDateTime());
+        assertThat(dto.getImageRef()).isEqualTo(entity.getImageRef());
+        assertThat(dto.getImageData()).isNull();
+        assertThat(dto.getInvolvedVehicles()).isEqualTo(entity.getInvolvedVehicles());
+        assertThat(dto.getConfidenceScore()).isEqualTo(entity.getConfidenceScore());
+        assertThat(dto.getSeverity()).isEqualTo("LOW");
+        assertThat(dto.getStatus()).isEqualTo("RESOLVED");
+        assertThat(dto.getLocation()).isEqualTo(entity.getLocation());
+        assertThat(dto.getDescription()).isEqualTo(entity.getDescription());
+        assertThat(dto.getCreatedAt()).isEqualTo(entity.getCreatedAt());
+        assertThat(dto.getUpdatedAt()).isEqualTo(entity.getUpdatedAt());
+    }
+
+    @Test
+    void accidentDetectionToEntityKeepsDefaultsForMissingEnums() {
+        AccidentDetectionDTO dto = accidentDetectionMapper.toDto(accidentDetection());
+        dto.setSeverity(null);
+        dto.setStatus(null);
+        dto.setImageData("aW1hZ2U=");
+
+        AccidentDetection entity = accidentDetectionMapper.toEntity(dto);
+
+        assertThat(entity.getSeverity()).isEqualTo(AccidentDetection.Severity.MEDIUM);
+        assertThat(entity.getStatus()).isEqualTo(AccidentDetection.Status.PENDING);
+        assertThat(entity.getImageRef()).isEqualTo(dto.getImageRef());
+        assertThat(entity.getConfidenceScore()).isEqualTo(dto.getConfidenceScore());
+    }
+
+    @Test
+    void accidentDetectionToEntityRejectsUnknownSeverity() {
+        AccidentDetectionDTO dto = accidentDetectionMapper.toDto(accidentDetection());
+        dto.setSeverity("Medium");
+
+        assertThatThrownBy(() -> accidentDetectionMapper.toEntity(dto))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static TrafficData trafficData() {
+        LocalDateTime time = LocalDateTime.of(2023, 11, 20, 17, 45);
+        TrafficData entity = new TrafficData();
+        entity.setId(9001L);
+        entity.setDateTime(time);
+        entity.setPedestrianCount(11);
+        entity.setCarCount(6);
+        entity.setBicycleCount(0);
+        entity.setBusCount(4);
+        entity.setMotorcycleCount(2);
+        entity.setTruckCount(1);
+        entity.setPedestrianSpeed(new BigDecimal("5.10"));
+        entity.setCarSpeed(new BigDecimal("57.35"));
+        entity.setBicycleSpeed(new BigDecimal("19.95"));
+        entity.setBusSpeed(new BigDecimal("33.60"));
+        entity.setMotorcycleSpeed(new BigDecimal("44.00"));
+        entity.setTruckSpeed(new BigDecimal("25.75"));
+        entity.setVolume(new BigDecimal("96.05"));
+        entity.setCongestionLevel(2);
+        entity.setCreatedAt(time);
+        entity.setUpdatedAt(time.plusSeconds(30));
+        return entity;
+    }
+
+    private static AccidentDetection accidentDetection() {
+        LocalDateTime time = LocalDateTime.of(2023, 11, 20, 18, 2);
+        AccidentDetection entity = new AccidentDetection();
+        entity.setId(23L);
+        entity.setDateTime(time);
+        entity.setImageRef("a07be5");
+        entity.setInvolvedVehicles("bicycle_car");
+        entity.setConfidenceScore(new BigDecimal("0.78"));
+        entity.setSeverity(AccidentDetection.Severity.LOW);
+        entity.setStatus(AccidentDetection.Status.RESOLVED);
+        entity.setLocation("North Gate");
+        entity.setDescription("Bicycle struck at crossing");
+        entity.setCreatedAt(time);
+        entity.setUpdatedAt(time.plusMinutes(40));
+        return entity;
+    }
+}
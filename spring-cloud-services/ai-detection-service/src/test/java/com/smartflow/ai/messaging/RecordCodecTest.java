@@ -0,0 +1,188 @@
+package com.smartflow.ai.messaging;
+
+import com.smartflow.ai.dto.AccidentDetectionDTO;
+import com.smartflow.ai.dto.TrafficDataDTO;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 编码后再解码应得到原记录；已发布的 schema-id 必须仍能解码
+ */
+class RecordCodecTest {
+
+    private static final LocalDateTime TIME = LocalDateTime.of(2024, 2, 29, 23, 59, 59, 999_000_000);
+
+    @Test
+    void trafficSampleRoundTrip() {
+        TrafficDataDTO data = trafficData();
+
+        TrafficDataDTO decoded = RecordCodec.decodeTrafficSample(RecordCodec.TRAFFIC_SAMPLE_V1, RecordCodec.encode(data));
+
+        assertThat(decoded).isEqualTo(data);
+    }
+
+    @Test
+    void trafficSampleKeepsNegativeValues() {
+        TrafficDataDTO data = trafficData();
+        data.setPedestrianSpeed(new BigDecimal("-4.60"));
+        data.setVolume(new BigDecimal("-0.01"));
+        data.setDateTime(LocalDateTime.of(1965, 3, 1, 0, 0));
+
+        TrafficDataDTO decoded = RecordCodec.decodeTrafficSample(RecordCodec.TRAFFIC_SAMPLE_V1, RecordCodec.encode(data));
+
+        assertThat(decoded.getPedestrianSpeed()).isEqualTo(new BigDecimal("-4.60"));
+        assertThat(decoded.getVolume()).isEqualTo(new BigDecimal("-0.01"));
+        assertThat(decoded.getDateTime()).isEqualTo(data.getDateTime());
+    }
+
+    @Test
+    void trafficSampleEncodesMissingValuesAsZero() {
+        TrafficDataDTO data = new TrafficDataDTO();
+        data.setId(0L);
+        data.setDateTime(TIME);
+        data.setCarCount(null);
+        data.setCarSpeed(null);
+        data.setVolume(null);
+        data.setCongestionLevel(null);
+
+        TrafficDataDTO decoded = RecordCodec.decodeTrafficSample(RecordCodec.TRAFFIC_SAMPLE_V1, RecordCodec.encode(data));
+
+        assertThat(decoded.getId()).isZero();
+        assertThat(decoded.getCameraId()).isNull();
+        assertThat(decoded.getCarCount()).isZero();
+        assertThat(decoded.getCarSpeed()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(decoded.getVolume()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(decoded.getCongestionLevel()).isZero();
+    }
+
+    @Test
+    void trafficSampleRejectsOtherSchemas() {
+        byte[] payload = RecordCodec.encode(trafficData());
+
+        assertThatThrownBy(() -> RecordCodec.decodeTrafficSample(RecordCodec.ACCIDENT_NOTIFICATION_V2, payload))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> RecordCodec.decodeTrafficSample(RecordCodec.JSON_SCHEMA, payload))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void accidentNotificationV2RoundTrip() {
+        AccidentDetectionDTO data = accidentNotification();
+
+        AccidentDetectionDTO decoded = RecordCodec.decodeAccidentNotification(
+                RecordCodec.ACCIDENT_NOTIFICATION_V2, RecordCodec.encode(data));
+
+        data.setImageData(null);
+        assertThat(decoded).isEqualTo(data);
+    }
+
+    @Test
+    void accidentNotificationKeepsNullStrings() {
+        AccidentDetectionDTO data = accidentNotification();
+        data.setCameraId(null);
+        data.setSeverity(null);
+        data.setLocation(null);
+        data.setDescription("");
+        data.setImageRef(null);
+
+        AccidentDetectionDTO decoded = RecordCodec.decodeAccidentNotification(
+                RecordCodec.ACCIDENT_NOTIFICATION_V2, RecordCodec.encode(data));
+
+        assertThat(decoded.getCameraId()).isNull();
+        assertThat(decoded.getSeverity()).isNull();
+        assertThat(decoded.getLocation()).isNull();
+        assertThat(decoded.getDescription()).isEmpty();
+        assertThat(decoded.getImageRef()).isNull();
+        assertThat(decoded.getStatus()).isEqualTo(data.getStatus());
+    }
+
+    @Test
+    void accidentNotificationV1HasNoCameraId() {
+        AccidentDetectionDTO data = accidentNotification();
+        data.setCameraId(null);
+        byte[] v2 = RecordCodec.encode(data);
+        // v1 没有 cameraId：去掉 id 之后表示空 cameraId 的一个字节
+        byte[] v1 = new byte[v2.length - 1];
+        v1[0] = v2[0];
+        System.arraycopy(v2, 2, v1, 1, v2.length - 2);
+
+        AccidentDetectionDTO decoded = RecordCodec.decodeAccidentNotification(RecordCodec.ACCIDENT_NOTIFICATION_V1, v1);
+
+        data.setImageData(null);
+        assertThat(decoded).isEqualTo(data);
+    }
+
+    @Test
+    void accidentNotificationRejectsTruncatedOrTrailingBytes() {
+        byte[] payload = RecordCodec.encode(accidentNotification());
+        byte[] truncated = Arrays.copyOf(payload, payload.length - 1);
+        byte[] trailing = Arrays.copyOf(payload, payload.length + 1);
+
+        assertThatThrownBy(() -> RecordCodec.decodeAccidentNotification(RecordCodec.ACCIDENT_NOTIFICATION_V2, truncated))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> RecordCodec.decodeAccidentNotification(RecordCodec.ACCIDENT_NOTIFICATION_V2, trailing))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> RecordCodec.decodeAccidentNotification(RecordCodec.TRAFFIC_SAMPLE_V1, payload))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void schemaHeaderRoundTrip() {
+        for (int schemaId : new int[]{RecordCodec.TRAFFIC_SAMPLE_V1, RecordCodec.ACCIDENT_NOTIFICATION_V1,
+                RecordCodec.ACCIDENT_NOTIFICATION_V2}) {
+            assertThat(RecordCodec.parseSchemaHeader(RecordCodec.schemaHeader(schemaId))).isEqualTo(schemaId);
+        }
+        assertThat(RecordCodec.parseSchemaHeader(null)).isEqualTo(-1);
+        assertThat(RecordCodec.parseSchemaHeader(new byte[0])).isEqualTo(-1);
+        assertThat(RecordCodec.parseSchemaHeader("v2".getBytes(StandardCharsets.US_ASCII))).isEqualTo(-1);
+    }
+
+    /**
+     * ID、车辆数和交通量跨过变长整数的单字节边界
+     */
+    private static TrafficDataDTO trafficData() {
+        TrafficDataDTO data = new TrafficDataDTO();
+        data.setId(70_000L);
+        data.setCameraId(201L);
+        data.setDateTime(TIME);
+        data.setPedestrianCount(0);
+        data.setCarCount(128);
+        data.setBicycleCount(12);
+        data.setBusCount(1);
+        data.setMotorcycleCount(63);
+        data.setTruckCount(17);
+        data.setPedestrianSpeed(new BigDecimal("0.00"));
+        data.setCarSpeed(new BigDecimal("63.99"));
+        data.setBicycleSpeed(new BigDecimal("18.40"));
+        data.setBusSpeed(new BigDecimal("22.50"));
+        data.setMotorcycleSpeed(new BigDecimal("41.07"));
+        data.setTruckSpeed(new BigDecimal("27.30"));
+        data.setVolume(new BigDecimal("1530.25"));
+        data.setCongestionLevel(3);
+        return data;
+    }
+
+    private static AccidentDetectionDTO accidentNotification() {
+        AccidentDetectionDTO data = new AccidentDetectionDTO();
+        // v1 测试按单字节ID截取，ID应小于127
+        data.setId(15L);
+        data.setCameraId(150L);
+        data.setDateTime(TIME);
+        data.setImageData("aW1hZ2U=");
+        data.setImageRef("9b41e07d");
+        data.setInvolvedVehicles("car_truck");
+        data.setConfidenceScore(new BigDecimal("0.87"));
+        data.setSeverity("CRITICAL");
+        data.setStatus("PENDING");
+        data.setLocation("人民路与中山路交叉口");
+        data.setDescription("Rear-end collision");
+        return data;
+    }
+}
@@ -0,0 +1,131 @@
+package com.smartflow.ai.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 从基线表结构启动：旧表 accident_detections 只有 image_data、没有 image_ref 列
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class StorageMigrationTest {
+
+    @Container
+    private static final MySQLContainer<?> MYSQL = new MySQLContainer<>("mysql:8.0");
+
+    /**
+     * 基线版本 model.AccidentDetection 由 ddl-auto 生成的表
+     */
+    private static final String BASELINE_LEGACY_DDL = "CREATE TABLE accident_detections ("
+            + "id BIGINT NOT NULL AUTO_INCREMENT, confidence_score DOUBLE PRECISION, date_time DATETIME(6) NOT NULL, "
+            + "description VARCHAR(255), image_data LONGBLOB, involved_vehicles VARCHAR(255) NOT NULL, "
+            + "location VARCHAR(255), severity VARCHAR(255), status VARCHAR(255), PRIMARY KEY (id)) ENGINE=InnoDB";
+
+    /**
+     * 当前 entity.AccidentDetection 经 ddl-auto 更新后的表
+     */
+    private static final String CURRENT_DDL = "CREATE TABLE accident_detection ("
+            + "id BIGINT NOT NULL AUTO_INCREMENT, camera_id BIGINT, date_time DATETIME(6) NOT NULL, image_ref VARCHAR(64), "
+            + "involved_vehicles VARCHAR(255), confidence_score DECIMAL(3,2) NOT NULL, severity VARCHAR(255), "
+            + "status VARCHAR(255), location VARCHAR(255), description TEXT, created_at DATETIME(6), "
+            + "updated_at DATETIME(6), PRIMARY KEY (id)) ENGINE=InnoDB";
+
+    @TempDir
+    Path frames;
+
+    private JdbcTemplate jdbcTemplate;
+    private FrameStore frameStore;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                MYSQL.getJdbcUrl(), MYSQL.getUsername(), MYSQL.getPassword()));
+        jdbcTemplate.execute(BASELINE_LEGACY_DDL);
+        jdbcTemplate.execute(CURRENT_DDL);
+        jdbcTemplate.update("INSERT INTO accident_detections (confidence_score, date_time, image_data, "
+                + "involved_vehicles, location, severity, status) VALUES "
+                + "(0.913, '2024-06-01 08:30:00', ?, 'car_car', 'Gate 1', 'High', 'Pending'), "
+                + "(0.5, '2024-06-01 09:00:00', NULL, 'car_bicycle', 'Gate 2', 'Unknown', 'Pending')",
+                "legacy-frame".getBytes(StandardCharsets.UTF_8));
+
+        frameStore = new FrameStore();
+        ReflectionTestUtils.setField(frameStore, "rootPath", frames.toString());
+        frameStore.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS accident_detections");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS accident_detection");
+    }
+
+    @Test
+    void migratesImagesThenMergesLegacyTable() throws IOException {
+        imageMigrator().run(null);
+        schemaMigrator().run(null);
+
+        assertThat(SchemaMetadata.tableExists(jdbcTemplate, "accident_detections")).isFalse();
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT image_ref, location, severity, status, confidence_score FROM accident_detection ORDER BY date_time");
+        assertThat(rows).hasSize(2);
+        String ref = (String) rows.get(0).get("image_ref");
+        assertThat(ref).hasSize(64);
+        assertThat(frameStore.map(ref)).isNotNull();
+        assertThat(rows.get(0).get("location")).isEqualTo("Gate 1");
+        assertThat(rows.get(0).get("severity")).isEqualTo("HIGH");
+        assertThat(rows.get(0).get("status")).isEqualTo("PENDING");
+        assertThat(rows.get(1).get("image_ref")).isNull();
+        assertThat(rows.get(1).get("location")).isEqualTo("Gate 2");
+        assertThat(rows.get(1).get("severity")).isEqualTo("MEDIUM");
+    }
+
+    @Test
+    void mergesRowsWithoutImagesWhenImageMigrationIsSkipped() {
+        schemaMigrator().run(null);
+
+        assertThat(SchemaMetadata.columnExists(jdbcTemplate, "accident_detections", "image_ref")).isTrue();
+        assertThat(jdbcTemplate.queryForList("SELECT location FROM accident_detection", String.class))
+                .containsExactly("Gate 2");
+        // 仍带 image_data 的行等图片迁移后再并入
+        assertThat(jdbcTemplate.queryForList("SELECT location FROM accident_detections", String.class))
+                .containsExactly("Gate 1");
+
+        imageMigrator().run(null);
+        schemaMigrator().run(null);
+
+        assertThat(SchemaMetadata.tableExists(jdbcTemplate, "accident_detections")).isFalse();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM accident_detection WHERE image_ref IS NOT NULL",
+                Long.class)).isEqualTo(1L);
+    }
+
+    private LegacyImageMigrator imageMigrator() {
+        LegacyImageMigrator migrator = new LegacyImageMigrator(jdbcTemplate, frameStore);
+        ReflectionTestUtils.setField(migrator, "enabled", true);
+        ReflectionTestUtils.setField(migrator, "batchSize", 1);
+        return migrator;
+    }
+
+    private StorageSchemaMigrator schemaMigrator() {
+        StorageSchemaMigrator migrator = new StorageSchemaMigrator(jdbcTemplate,
+                new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+        ReflectionTestUtils.setField(migrator, "enabled", true);
+        ReflectionTestUtils.setField(migrator, "batchSize", 1);
+        return migrator;
+    }
+}
@@ -5,6 +5,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cloud.openfeign.EnableFeignClients;
 import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * 事件管理服务启动类
@@ -14,6 +15,7 @@ import org.springframework.kafka.annotation.EnableKafka;
 @EnableCaching
 @EnableKafka
 @EnableFeignClients
+@EnableScheduling
 public class EventManagementServiceApplication {
 
     public static void main(String[] args) {
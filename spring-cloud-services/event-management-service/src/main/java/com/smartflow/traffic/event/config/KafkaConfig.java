@@ -2,6 +2,7 @@ package com.smartflow.traffic.event.config;
 
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
@@ -11,6 +12,9 @@ import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.*;
 import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.FixedBackOff;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -28,6 +32,12 @@ public class KafkaConfig {
     @Value("${spring.kafka.consumer.group-id}")
     private String groupId;
 
+    @Value("${event.ingestion.retry-interval-ms:2000}")
+    private long retryIntervalMs;
+
+    @Value("${event.ingestion.max-retries:5}")
+    private long maxRetries;
+
     /**
      * Kafka生产者配置
      */
@@ -75,6 +85,8 @@ public class KafkaConfig {
 
     /**
      * Kafka监听器容器工厂
+     * 监听器抛出异常时整批按 retry-interval-ms 间隔重试 max-retries 次，
+     * 仍失败则把这批消息逐条发送到 原主题.DLT 后提交偏移量，不再阻塞后续消息
      */
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, String> kafkaListenerContainerFactory() {
@@ -84,8 +96,18 @@ public class KafkaConfig {
         factory.setConcurrency(3);
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
         factory.setBatchListener(true);
+        factory.setCommonErrorHandler(errorHandler());
         
         return factory;
     }
+
+    /**
+     * 死信主题的分区数可能少于原主题，不沿用原分区，由生产者选择
+     */
+    private DefaultErrorHandler errorHandler() {
+        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(kafkaTemplate(),
+                (record, exception) -> new TopicPartition(record.topic() + ".DLT", -1));
+        return new DefaultErrorHandler(recoverer, new FixedBackOff(retryIntervalMs, maxRetries));
+    }
 }
 
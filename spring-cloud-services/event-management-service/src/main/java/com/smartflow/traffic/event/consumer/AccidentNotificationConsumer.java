@@ -0,0 +1,113 @@
+package com.smartflow.traffic.event.consumer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartflow.traffic.event.dto.AccidentNotificationDTO;
+import com.smartflow.traffic.event.entity.Event;
+import com.smartflow.traffic.event.entity.EventLevel;
+import com.smartflow.traffic.event.entity.EventStatus;
+import com.smartflow.traffic.event.service.DetectedEventStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 事故通知Kafka消费者
+ * 批量监听：整批解析后按检测ID去重批量写入事件，成功后提交一次偏移量；
+ * 消息以事故检测ID为键，同一检测的重复投递落在同一分区
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AccidentNotificationConsumer {
+
+    static final String EVENT_TYPE = "ACCIDENT";
+
+    private final ObjectMapper objectMapper;
+    private final DetectedEventStore detectedEventStore;
+
+    /**
+     * 消费事故通知，生成待确认事件
+     */
+    @KafkaListener(topics = "${event.ingestion.accident-topic:accident-notifications}")
+    public void consumeAccidentNotifications(List<ConsumerRecord<String, String>> records,
+                                             Acknowledgment acknowledgment) {
+        List<Event> batch = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, String> record : records) {
+            AccidentNotificationDTO notification = parse(record);
+            if (notification != null && isValid(notification)) {
+                batch.add(toEvent(notification));
+            } else {
+                log.warn("跳过无效事故通知 - Topic: {}, Partition: {}, Offset: {}",
+                        record.topic(), record.partition(), record.offset());
+            }
+        }
+
+        // 写入失败时抛出异常，容器的错误处理器按退避整批重试，仍失败则发送到死信主题后提交偏移量
+        List<Event> inserted = detectedEventStore.insertNew(batch);
+        acknowledgment.acknowledge();
+
+        log.debug("事故通知批次处理完成: 接收 {} 条, 新建事件 {} 个", records.size(), inserted.size());
+    }
+
+    private AccidentNotificationDTO parse(ConsumerRecord<String, String> record) {
+        if (record.value() == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(record.value(), AccidentNotificationDTO.class);
+        } catch (Exception e) {
+            log.debug("事故通知解析失败 - Partition: {}, Offset: {}", record.partition(), record.offset(), e);
+            return null;
+        }
+    }
+
+    private boolean isValid(AccidentNotificationDTO notification) {
+        return notification.getId() != null
+                && notification.getDateTime() != null
+                && (notification.getConfidenceScore() == null
+                    || (notification.getConfidenceScore().signum() >= 0
+                        && notification.getConfidenceScore().compareTo(BigDecimal.ONE) <= 0));
+    }
+
+    static Event toEvent(AccidentNotificationDTO notification) {
+        LocalDateTime now = LocalDateTime.now();
+        String location = notification.getLocation();
+        return Event.builder()
+                .eventType(EVENT_TYPE)
+                .title(location != null && !location.isEmpty() ? "交通事故 - " + location : "交通事故")
+                .description(notification.getDescription())
+                .status(EventStatus.PENDING_CONFIRMATION)
+                .level(toLevel(notification.getSeverity()))
+                .detectionId(notification.getId())
+                .cameraId(notification.getCameraId())
+                .cameraLocation(location)
+                .confidence(notification.getConfidenceScore() != null
+                        ? notification.getConfidenceScore().doubleValue() : null)
+                .startTime(notification.getDateTime())
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+    }
+
+    /**
+     * 事故严重程度与事件级别同名，未知值按中级处理
+     */
+    private static EventLevel toLevel(String severity) {
+        if (severity != null) {
+            for (EventLevel level : EventLevel.values()) {
+                if (level.name().equals(severity)) {
+                    return level;
+                }
+            }
+        }
+        return EventLevel.MEDIUM;
+    }
+}
@@ -1,6 +1,7 @@
 package com.smartflow.traffic.event.controller;
 
 import com.smartflow.traffic.event.dto.ApiResponse;
+import com.smartflow.traffic.event.dto.EventCountBucketDTO;
 import com.smartflow.traffic.event.dto.EventDTO;
 import com.smartflow.traffic.event.entity.EventStatus;
 import com.smartflow.traffic.event.entity.EventLevel;
@@ -11,6 +12,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -153,13 +155,17 @@ public class EventController {
     }
 
     /**
-     * 查询活跃事件
+     * 查询活跃事件，可按级别、摄像头和开始时间范围过滤
      */
     @GetMapping("/active")
-    public ResponseEntity<ApiResponse<List<EventDTO>>> getActiveEvents() {
-        log.debug("查询活跃事件请求");
+    public ResponseEntity<ApiResponse<List<EventDTO>>> getActiveEvents(
+            @RequestParam(required = false) EventLevel level,
+            @RequestParam(required = false) Long cameraId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
+        log.debug("查询活跃事件请求: level={}, cameraId={}, {} - {}", level, cameraId, startTime, endTime);
         
-        List<EventDTO> events = eventService.getActiveEvents();
+        List<EventDTO> events = eventService.getActiveEvents(level, cameraId, startTime, endTime);
         return ResponseEntity.ok(ApiResponse.success(events));
     }
 
@@ -187,15 +193,28 @@ public class EventController {
         return ResponseEntity.ok(ApiResponse.success(statistics));
     }
 
+    /**
+     * 按小时统计事件数量
+     */
+    @GetMapping("/statistics/hourly")
+    public ResponseEntity<ApiResponse<List<EventCountBucketDTO>>> getHourlyEventCounts(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
+        log.debug("按小时统计事件数量请求: {} - {}", startTime, endTime);
+        
+        List<EventCountBucketDTO> buckets = eventService.getHourlyEventCounts(startTime, endTime);
+        return ResponseEntity.ok(ApiResponse.success(buckets));
+    }
+
     /**
      * 手动触发自动关闭超时事件
      */
     @PostMapping("/auto-close")
-    public ResponseEntity<ApiResponse<Void>> triggerAutoClose() {
+    public ResponseEntity<ApiResponse<List<Long>>> triggerAutoClose() {
         log.info("手动触发自动关闭超时事件");
         
-        eventService.autoCloseTimeoutEvents();
-        return ResponseEntity.ok(ApiResponse.success("自动关闭超时事件完成", null));
+        List<Long> closedIds = eventService.autoCloseTimeoutEvents();
+        return ResponseEntity.ok(ApiResponse.success("自动关闭超时事件完成", closedIds));
     }
 }
 
@@ -0,0 +1,37 @@
+package com.smartflow.traffic.event.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * AI检测服务发送的事故通知（accident-notifications 主题的JSON消息），只保留生成事件需要的字段
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccidentNotificationDTO {
+
+    /**
+     * 事故检测记录ID，即事件的检测ID
+     */
+    private Long id;
+
+    private Long cameraId;
+
+    private LocalDateTime dateTime;
+
+    private BigDecimal confidenceScore;
+
+    /**
+     * LOW、MEDIUM、HIGH、CRITICAL
+     */
+    private String severity;
+
+    private String location;
+
+    private String description;
+}
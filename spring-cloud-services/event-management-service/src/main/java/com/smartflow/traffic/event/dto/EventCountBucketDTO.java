@@ -0,0 +1,24 @@
+package com.smartflow.traffic.event.dto;
+
+import com.smartflow.traffic.event.entity.EventLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * 一个小时内开始的事件数量，levelCounts 只包含数量不为0的级别
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventCountBucketDTO {
+
+    private LocalDateTime bucketStart;
+
+    private long total;
+
+    private Map<EventLevel, Long> levelCounts;
+}
@@ -0,0 +1,36 @@
+package com.smartflow.traffic.event.dto;
+
+import com.smartflow.traffic.event.entity.EventLevel;
+import com.smartflow.traffic.event.entity.EventStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 事件状态变更消息
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EventStatusChangeDTO {
+
+    private Long eventId;
+
+    private Long detectionId;
+
+    private Long cameraId;
+
+    private EventLevel level;
+
+    private EventStatus previousStatus;
+
+    private EventStatus status;
+
+    private String handler;
+
+    private LocalDateTime changedAt;
+}
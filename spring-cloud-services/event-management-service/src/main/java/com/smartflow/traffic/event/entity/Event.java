@@ -12,7 +12,12 @@ import java.time.LocalDateTime;
  * 交通事件实体类
  */
 @Entity
-@Table(name = "traffic_events")
+@Table(name = "traffic_events", indexes = {
+        @Index(name = "idx_status_created_at", columnList = "status, created_at"),
+        @Index(name = "idx_start_time", columnList = "start_time")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uk_detection_id", columnNames = "detection_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
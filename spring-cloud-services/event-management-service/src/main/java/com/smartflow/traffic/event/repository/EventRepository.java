@@ -4,11 +4,13 @@ import com.smartflow.traffic.event.entity.Event;
 import com.smartflow.traffic.event.entity.EventStatus;
 import com.smartflow.traffic.event.entity.EventLevel;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,6 +25,17 @@ public interface EventRepository extends JpaRepository<Event, Long> {
      */
     Optional<Event> findByDetectionId(Long detectionId);
 
+    /**
+     * 根据检测ID批量查找事件
+     */
+    List<Event> findByDetectionIdIn(Collection<Long> detectionIds);
+
+    /**
+     * 给定检测ID中已有事件的检测ID
+     */
+    @Query("SELECT e.detectionId FROM Event e WHERE e.detectionId IN :detectionIds")
+    List<Long> findDetectionIdsIn(@Param("detectionIds") Collection<Long> detectionIds);
+
     /**
      * 根据状态查找事件
      */
@@ -80,9 +93,36 @@ public interface EventRepository extends JpaRepository<Event, Long> {
     long countByLevel(EventLevel level);
 
     /**
-     * 查找需要自动关闭的事件（超过指定时间未更新的待确认事件）
+     * 按状态和级别分组统计事件数量，每行为 [EventStatus, EventLevel, Long]
+     */
+    @Query("SELECT e.status, e.level, COUNT(e) FROM Event e GROUP BY e.status, e.level")
+    List<Object[]> countGroupByStatusAndLevel();
+
+    /**
+     * 按开始时间所在小时和级别统计 since 之后的事件数量，每行为 [yyyyMMddHH, 级别, 数量]
+     */
+    @Query(value = "SELECT DATE_FORMAT(start_time, '%Y%m%d%H') AS hour, level, COUNT(*) FROM traffic_events "
+            + "WHERE start_time >= :since GROUP BY hour, level", nativeQuery = true)
+    List<Object[]> countHourlyByLevel(@Param("since") LocalDateTime since);
+
+    /**
+     * 锁定一批需要自动关闭的事件（超过指定时间仍待确认），已被其他事务锁定的行跳过
+     */
+    @Query(value = "SELECT * FROM traffic_events WHERE status = 'PENDING_CONFIRMATION' AND created_at < :thresholdTime "
+            + "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Event> lockEventsForAutoClose(@Param("thresholdTime") LocalDateTime thresholdTime, @Param("limit") int limit);
+
+    /**
+     * 批量变更事件状态，只更新仍处于 expected 状态的行
      */
-    @Query("SELECT e FROM Event e WHERE e.status = 'PENDING_CONFIRMATION' AND e.createdAt < :thresholdTime")
-    List<Event> findEventsForAutoClose(@Param("thresholdTime") LocalDateTime thresholdTime);
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Event e SET e.status = :status, e.handler = :handler, e.handlerNotes = :notes, "
+            + "e.updatedAt = :now, e.endTime = :now WHERE e.id IN :ids AND e.status = :expected")
+    int transitionStatus(@Param("ids") List<Long> ids,
+                         @Param("expected") EventStatus expected,
+                         @Param("status") EventStatus status,
+                         @Param("handler") String handler,
+                         @Param("notes") String notes,
+                         @Param("now") LocalDateTime now);
 }
 
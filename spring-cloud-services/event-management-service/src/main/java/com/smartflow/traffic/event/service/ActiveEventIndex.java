@@ -0,0 +1,295 @@
+package com.smartflow.traffic.event.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartflow.traffic.event.dto.EventDTO;
+import com.smartflow.traffic.event.entity.Event;
+import com.smartflow.traffic.event.entity.EventLevel;
+import com.smartflow.traffic.event.repository.EventRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 活跃事件（非终态）索引，保存在Redis中供所有实例共享
+ * <ul>
+ *   <li>{events:active}:all 以及按级别、摄像头划分的有序集合，成员为事件ID，分值为开始时间，
+ *       按级别、摄像头和开始时间范围查询为 O(log n + m)</li>
+ *   <li>{events:active}:data 哈希保存事件DTO的JSON，{events:active}:keys 记录每个事件所在的二级索引</li>
+ *   <li>{events:active}:versions 哈希保存每个事件最后写入的版本（updated_at 毫秒数），
+ *       {events:active}:removed 有序集合记录已移出索引的事件（墓碑），分值为移出时的版本</li>
+ * </ul>
+ * 每次写入事件后在事务提交后增量更新，单个事件的更新由Lua脚本原子完成，版本比已写入的旧的更新被忽略，
+ * 因此提交后回调的先后顺序、以及重建时读取的数据库快照都不会覆盖更新的状态；
+ * 启动时和定时任务按数据库重建，修正Redis写入失败等原因造成的偏差。
+ * 版本取自各实例的时钟，实例之间的时钟偏差应远小于同一事件两次修改的间隔
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ActiveEventIndex implements ApplicationRunner {
+
+    private static final String PREFIX = "{events:active}:";
+    private static final String ALL_KEY = PREFIX + "all";
+    private static final String DATA_KEY = PREFIX + "data";
+    private static final String MEMBERSHIP_KEY = PREFIX + "keys";
+    private static final String VERSION_KEY = PREFIX + "versions";
+    private static final String REMOVED_KEY = PREFIX + "removed";
+    private static final List<String> SCRIPT_KEYS =
+            Arrays.asList(ALL_KEY, DATA_KEY, MEMBERSHIP_KEY, VERSION_KEY, REMOVED_KEY);
+
+    /**
+     * KEYS: all, data, keys, versions, removed;
+     * ARGV: id, 版本, 开始时间, DTO JSON（空字符串表示移出索引）, 二级索引键...
+     * 返回 -1 表示版本比已写入的旧，未做修改
+     */
+    private static final RedisScript<Long> UPDATE_SCRIPT = new DefaultRedisScript<>(
+            "local current = redis.call('HGET', KEYS[4], ARGV[1])\n"
+                    + "if current and tonumber(current) > tonumber(ARGV[2]) then return -1 end\n"
+                    + "redis.call('HSET', KEYS[4], ARGV[1], ARGV[2])\n"
+                    + "local old = redis.call('HGET', KEYS[3], ARGV[1])\n"
+                    + "if old then\n"
+                    + "  for key in string.gmatch(old, '[^|]+') do redis.call('ZREM', key, ARGV[1]) end\n"
+                    + "end\n"
+                    + "if ARGV[4] == '' then\n"
+                    + "  redis.call('ZREM', KEYS[1], ARGV[1])\n"
+                    + "  redis.call('HDEL', KEYS[2], ARGV[1])\n"
+                    + "  redis.call('HDEL', KEYS[3], ARGV[1])\n"
+                    + "  redis.call('ZADD', KEYS[5], ARGV[2], ARGV[1])\n"
+                    + "  return 0\n"
+                    + "end\n"
+                    + "redis.call('ZREM', KEYS[5], ARGV[1])\n"
+                    + "redis.call('ZADD', KEYS[1], ARGV[3], ARGV[1])\n"
+                    + "local keys = {}\n"
+                    + "for i = 5, #ARGV do\n"
+                    + "  redis.call('ZADD', ARGV[i], ARGV[3], ARGV[1])\n"
+                    + "  keys[#keys + 1] = ARGV[i]\n"
+                    + "end\n"
+                    + "redis.call('HSET', KEYS[2], ARGV[1], ARGV[4])\n"
+                    + "redis.call('HSET', KEYS[3], ARGV[1], table.concat(keys, '|'))\n"
+                    + "return 1",
+            Long.class);
+
+    /**
+     * 清理版本早于 ARGV[1] 的墓碑；KEYS: removed, versions
+     */
+    private static final RedisScript<Long> PURGE_SCRIPT = new DefaultRedisScript<>(
+            "local ids = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1])\n"
+                    + "for _, id in ipairs(ids) do\n"
+                    + "  redis.call('HDEL', KEYS[2], id)\n"
+                    + "  redis.call('ZREM', KEYS[1], id)\n"
+                    + "end\n"
+                    + "return #ids",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final EventRepository eventRepository;
+    private final EventMapper eventMapper;
+
+    @Value("${event.active-index.reconcile-interval:600000}")
+    private long reconcileInterval;
+
+    /**
+     * 重建移除事件时的版本余量，应大于最长事务的持续时间
+     */
+    @Value("${event.active-index.removal-margin:60000}")
+    private long removalMargin;
+
+    /**
+     * 至少成功重建过一次，之前的查询回退到数据库
+     */
+    private volatile boolean ready;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("活跃事件索引初始化失败，查询将回退到数据库", e);
+        }
+    }
+
+    /**
+     * 按数据库中的活跃事件重建索引：写入全部活跃事件并移除已不再活跃的事件
+     * 快照中的事件以各自的 updated_at 为版本写入，快照之后被关闭的事件不会被重新加入；
+     * 移除以读取快照前的时间减去余量为版本：快照之前开始、之后才提交的事务写入的 updated_at 早于快照，
+     * 只要事务持续时间不超过余量，这些事件就不会被移除；余量内未移除的事件留给下次重建
+     */
+    @Scheduled(fixedDelayString = "${event.active-index.reconcile-interval:600000}",
+            initialDelayString = "${event.active-index.reconcile-interval:600000}")
+    public void rebuild() {
+        long snapshotVersion = version(LocalDateTime.now());
+        List<Event> activeEvents = eventRepository.findActiveEvents();
+        Set<String> activeIds = new HashSet<>();
+        for (Event event : activeEvents) {
+            update(eventMapper.toDTO(event));
+            activeIds.add(String.valueOf(event.getId()));
+        }
+        Set<String> indexed = redisTemplate.opsForZSet().range(ALL_KEY, 0, -1);
+        int removed = 0;
+        if (indexed != null) {
+            for (String id : indexed) {
+                if (!activeIds.contains(id) && remove(Long.valueOf(id), snapshotVersion - removalMargin)) {
+                    removed++;
+                }
+            }
+        }
+        // 墓碑只需要挡住比它旧的延迟写入，保留两个重建周期
+        Long purged = redisTemplate.execute(PURGE_SCRIPT, Arrays.asList(REMOVED_KEY, VERSION_KEY),
+                String.valueOf(snapshotVersion - 2 * reconcileInterval));
+        ready = true;
+        log.info("活跃事件索引已重建: {} 个活跃事件, 移除 {} 个, 清理墓碑 {} 个", activeIds.size(), removed, purged);
+    }
+
+    /**
+     * 事务提交后按事件的最新状态更新索引，终态事件移出索引
+     */
+    public void updateAfterCommit(Event event) {
+        EventDTO snapshot = eventMapper.toDTO(event);
+        afterCommit(() -> update(snapshot));
+    }
+
+    /**
+     * 事务提交后把已删除的事件移出索引，以删除时间为版本
+     */
+    public void removeAfterCommit(Long id) {
+        long version = version(LocalDateTime.now());
+        afterCommit(() -> remove(id, version));
+    }
+
+    /**
+     * 事务提交后把一批事件移出索引
+     *
+     * @param updatedAt 这批事件新的 updated_at
+     */
+    public void removeAllAfterCommit(Collection<Long> ids, LocalDateTime updatedAt) {
+        List<Long> snapshot = new ArrayList<>(ids);
+        long version = version(updatedAt);
+        afterCommit(() -> snapshot.forEach(id -> remove(id, version)));
+    }
+
+    /**
+     * 查询活跃事件，按开始时间倒序
+     *
+     * @param level    为空时不限级别
+     * @param cameraId 为空时不限摄像头
+     * @param from     开始时间下限，为空时不限
+     * @param to       开始时间上限，为空时不限
+     */
+    public List<EventDTO> find(EventLevel level, Long cameraId, LocalDateTime from, LocalDateTime to) {
+        if (!ready) {
+            throw new IllegalStateException("活跃事件索引尚未建立");
+        }
+        // 优先使用更有选择性的二级索引，另一个条件在结果上过滤
+        String key = cameraId != null ? cameraKey(cameraId) : level != null ? levelKey(level) : ALL_KEY;
+        double min = from != null ? score(from) : Double.NEGATIVE_INFINITY;
+        double max = to != null ? score(to) : Double.POSITIVE_INFINITY;
+        Set<String> ids = redisTemplate.opsForZSet().reverseRangeByScore(key, min, max);
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Object> values = redisTemplate.opsForHash().multiGet(DATA_KEY, new ArrayList<>(ids));
+        List<EventDTO> events = new ArrayList<>(values.size());
+        for (Object value : values) {
+            // 两次读取之间被移出索引的事件
+            if (value == null) {
+                continue;
+            }
+            EventDTO event = read((String) value);
+            if (level == null || event.getLevel() == level) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    private void update(EventDTO event) {
+        long version = version(event.getUpdatedAt() != null ? event.getUpdatedAt() : event.getCreatedAt());
+        if (event.getStatus() == null || event.getStatus().isFinalStatus()) {
+            remove(event.getId(), version);
+            return;
+        }
+        List<String> args = new ArrayList<>(Arrays.asList(String.valueOf(event.getId()), String.valueOf(version),
+                String.valueOf(score(event.getStartTime())), write(event)));
+        if (event.getLevel() != null) {
+            args.add(levelKey(event.getLevel()));
+        }
+        if (event.getCameraId() != null) {
+            args.add(cameraKey(event.getCameraId()));
+        }
+        redisTemplate.execute(UPDATE_SCRIPT, SCRIPT_KEYS, args.toArray());
+    }
+
+    /**
+     * @return 是否移出，版本比已写入的旧时返回 false
+     */
+    private boolean remove(Long id, long version) {
+        Long result = redisTemplate.execute(UPDATE_SCRIPT, SCRIPT_KEYS,
+                String.valueOf(id), String.valueOf(version), "0", "");
+        return result != null && result >= 0;
+    }
+
+    /**
+     * Redis写入失败只记录日志，由定时重建修正
+     */
+    private void afterCommit(Runnable action) {
+        Runnable guarded = () -> {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                log.warn("活跃事件索引更新失败，等待下次重建", e);
+            }
+        };
+        AfterCommit.run(guarded);
+    }
+
+    private static String levelKey(EventLevel level) {
+        return PREFIX + "level:" + level.name();
+    }
+
+    private static String cameraKey(Long cameraId) {
+        return PREFIX + "camera:" + cameraId;
+    }
+
+    private static long version(LocalDateTime time) {
+        return time != null ? time.toInstant(ZoneOffset.UTC).toEpochMilli() : 0L;
+    }
+
+    private static double score(LocalDateTime time) {
+        return time != null ? time.toInstant(ZoneOffset.UTC).toEpochMilli() : 0;
+    }
+
+    private String write(EventDTO event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("事件序列化失败: " + event.getId(), e);
+        }
+    }
+
+    private EventDTO read(String json) {
+        try {
+            return objectMapper.readValue(json, EventDTO.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("活跃事件索引数据无法解析", e);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.smartflow.traffic.event.service;
+
+import com.smartflow.traffic.event.entity.Event;
+import com.smartflow.traffic.event.repository.EventRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 检测事件的批量写入
+ * 按检测ID去重，已存在的事件不覆盖（处理状态以事件管理为准），重复投递不会产生重复事件；
+ * 新事件在事务提交后失效缓存、加入活跃索引并更新计数。
+ * 去重依赖 detection_id 上的唯一索引，启动时检查并在缺失时创建
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DetectedEventStore {
+
+    private static final String INSERT_SQL = "INSERT INTO traffic_events (event_type, title, description, status, "
+            + "level, detection_id, camera_id, camera_location, confidence, start_time, created_at, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE id = id";
+
+    private static final String UNIQUE_INDEX = "uk_detection_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EventRepository eventRepository;
+    private final EventCacheEvictor eventCacheEvictor;
+    private final ActiveEventIndex activeEventIndex;
+    private final EventCounters eventCounters;
+
+    /**
+     * 确认 detection_id 上有唯一索引：ddl-auto 在已有重复数据时添加约束失败只记录日志，
+     * 缺失时在这里创建，存在重复检测ID时拒绝启动，需先合并重复事件
+     */
+    @PostConstruct
+    public void ensureUniqueDetectionId() {
+        Integer indexed = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.statistics "
+                + "WHERE table_schema = DATABASE() AND table_name = 'traffic_events' "
+                + "AND index_name = ? AND non_unique = 0", Integer.class, UNIQUE_INDEX);
+        if (indexed != null && indexed > 0) {
+            return;
+        }
+        List<Long> duplicates = jdbcTemplate.queryForList("SELECT detection_id FROM traffic_events "
+                + "WHERE detection_id IS NOT NULL GROUP BY detection_id HAVING COUNT(*) > 1 LIMIT 20", Long.class);
+        if (!duplicates.isEmpty()) {
+            throw new IllegalStateException("traffic_events 存在重复的检测ID，无法创建唯一索引 " + UNIQUE_INDEX
+                    + "，请先合并重复事件: " + duplicates);
+        }
+        jdbcTemplate.execute("ALTER TABLE traffic_events ADD UNIQUE INDEX " + UNIQUE_INDEX + " (detection_id)");
+        log.info("已创建唯一索引 {}", UNIQUE_INDEX);
+    }
+
+    /**
+     * 批量写入检测事件，事件必须带检测ID
+     *
+     * @return 本次新建的事件
+     */
+    @Transactional
+    public List<Event> insertNew(Collection<Event> events) {
+        Map<Long, Event> byDetectionId = new LinkedHashMap<>();
+        for (Event event : events) {
+            byDetectionId.putIfAbsent(event.getDetectionId(), event);
+        }
+        if (byDetectionId.isEmpty()) {
+            return Collections.emptyList();
+        }
+        eventRepository.findDetectionIdsIn(byDetectionId.keySet()).forEach(byDetectionId::remove);
+        if (byDetectionId.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Event> batch = new ArrayList<>(byDetectionId.values());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, event) -> {
+            ps.setString(1, event.getEventType());
+            ps.setString(2, event.getTitle());
+            setNullable(ps, 3, event.getDescription(), Types.VARCHAR);
+            ps.setString(4, event.getStatus().name());
+            ps.setString(5, event.getLevel().name());
+            ps.setLong(6, event.getDetectionId());
+            setNullable(ps, 7, event.getCameraId(), Types.BIGINT);
+            setNullable(ps, 8, event.getCameraLocation(), Types.VARCHAR);
+            setNullable(ps, 9, event.getConfidence(), Types.DOUBLE);
+            ps.setTimestamp(10, Timestamp.valueOf(event.getStartTime()));
+            ps.setTimestamp(11, now);
+            ps.setTimestamp(12, now);
+        });
+
+        // 读回自增ID；并发写入同一检测ID时对方已插入的行也会读到，由计数校准修正
+        List<Event> inserted = eventRepository.findByDetectionIdIn(byDetectionId.keySet());
+        Set<Object> cacheKeys = new LinkedHashSet<>();
+        EventCounters.Delta delta = new EventCounters.Delta();
+        for (Event event : inserted) {
+            EventCacheEvictor.addKeys(cacheKeys, event);
+            activeEventIndex.updateAfterCommit(event);
+            delta.add(event);
+        }
+        eventCacheEvictor.evictAfterCommit(cacheKeys);
+        eventCounters.applyAfterCommit(delta);
+        log.debug("批量写入检测事件: 新建 {} 个", inserted.size());
+        return inserted;
+    }
+
+    private static void setNullable(PreparedStatement ps, int index, Object value, int sqlType) throws SQLException {
+        if (value != null) {
+            ps.setObject(index, value, sqlType);
+        } else {
+            ps.setNull(index, sqlType);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.smartflow.traffic.event.service;
+
+import com.smartflow.traffic.event.entity.Event;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * events 缓存的定向失效
+ * 写操作只删除受影响事件的ID、检测ID条目，以及事件修改前后所属的状态、级别、摄像头列表
+ * （活跃事件由 ActiveEventIndex、统计由 EventCounters 增量维护，不经过此缓存）；
+ * 删除在事务提交后执行，避免并发读取在提交前把旧数据重新写回缓存
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EventCacheEvictor {
+
+    public static final String EVENTS_CACHE = "events";
+
+    private final CacheManager cacheManager;
+
+    /**
+     * 事件当前所在的缓存条目，键与 EventServiceImpl 中 @Cacheable 的 key 一致
+     * 修改前后各取一次合并，才能同时覆盖旧的和新的状态、级别、摄像头列表
+     */
+    public static Set<Object> keysOf(Event event) {
+        Set<Object> keys = new LinkedHashSet<>();
+        addKeys(keys, event);
+        return keys;
+    }
+
+    public static void addKeys(Set<Object> keys, Event event) {
+        if (event.getId() != null) {
+            keys.add(event.getId());
+        }
+        if (event.getDetectionId() != null) {
+            keys.add("detection_" + event.getDetectionId());
+        }
+        keys.add("status_" + event.getStatus());
+        keys.add("level_" + event.getLevel());
+        keys.add("camera_" + event.getCameraId());
+    }
+
+    /**
+     * 事务提交后删除给定条目，没有事务时立即删除
+     */
+    public void evictAfterCommit(Collection<Object> keys) {
+        AfterCommit.run(() -> evict(keys));
+    }
+
+    private void evict(Collection<Object> keys) {
+        try {
+            Cache events = cacheManager.getCache(EVENTS_CACHE);
+            if (events != null) {
+                for (Object key : keys) {
+                    events.evict(key);
+                }
+            }
+            log.debug("事件缓存已失效: {}", keys);
+        } catch (RuntimeException e) {
+            // 数据已提交，缓存删除失败不影响请求结果
+            log.warn("事件缓存失效失败: {}", keys, e);
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package com.smartflow.traffic.event.service;
+
+import com.smartflow.traffic.event.dto.EventCountBucketDTO;
+import com.smartflow.traffic.event.entity.Event;
+import com.smartflow.traffic.event.entity.EventLevel;
+import com.smartflow.traffic.event.entity.EventStatus;
+import com.smartflow.traffic.event.repository.EventRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 事件计数，保存在Redis中供所有实例共享
+ * <ul>
+ *   <li>{events:stats}:counts 哈希按 状态:级别 计数</li>
+ *   <li>{events:stats}:hour:yyyyMMddHH 哈希按开始时间所在小时和级别计数，保留 bucket-retention-hours 小时</li>
+ * </ul>
+ * 创建、状态变更、修改和删除事件时在事务提交后增量更新；启动时和定时任务用一次 GROUP BY 查询重新校准。
+ * 校准期间（{events:stats}:reconciling 存在时）增量同时记入 {events:stats}:journal，覆盖计数时再补回，
+ * 因此查询与覆盖之间的增量不会丢失。事务在查询前提交、提交后回调却在校准开始后才写入的增量会被计入两次，
+ * 该窗口只有提交到回调执行的时间，由下次校准修正。
+ * 读取时使用本地快照，超过 local-ttl-ms 或本实例有写入后重新从Redis读取
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EventCounters implements ApplicationRunner {
+
+    private static final String PREFIX = "{events:stats}:";
+    private static final String COUNTS_KEY = PREFIX + "counts";
+    private static final String HOUR_PREFIX = PREFIX + "hour:";
+    private static final String RECONCILING_KEY = PREFIX + "reconciling";
+    private static final String JOURNAL_KEY = PREFIX + "journal";
+    private static final DateTimeFormatter HOUR_FORMAT = new DateTimeFormatterBuilder()
+            .appendPattern("yyyyMMddHH")
+            .parseDefaulting(ChronoField.MINUTE_OF_HOUR, 0)
+            .toFormatter();
+    private static final Duration RECONCILE_TIMEOUT = Duration.ofMinutes(5);
+
+    /**
+     * KEYS: reconciling, journal, counts, 小时桶...; ARGV: 每个小时桶的过期时间戳（秒）, (键序号, 字段, 增量)...
+     * 小时桶只在新建（尚无过期时间）时设置过期时间
+     */
+    private static final RedisScript<Long> APPLY_SCRIPT = new DefaultRedisScript<>(
+            "local journaling = redis.call('EXISTS', KEYS[1]) == 1\n"
+                    + "for i = #KEYS - 2, #ARGV, 3 do\n"
+                    + "  local key = KEYS[tonumber(ARGV[i])]\n"
+                    + "  redis.call('HINCRBY', key, ARGV[i + 1], ARGV[i + 2])\n"
+                    + "  if journaling then redis.call('HINCRBY', KEYS[2], key .. '|' .. ARGV[i + 1], ARGV[i + 2]) end\n"
+                    + "end\n"
+                    + "for i = 4, #KEYS do\n"
+                    + "  if redis.call('TTL', KEYS[i]) == -1 then redis.call('EXPIREAT', KEYS[i], ARGV[i - 3]) end\n"
+                    + "end\n"
+                    + "return 0",
+            Long.class);
+
+    /**
+     * 用查询结果覆盖计数并补回校准期间记下的增量
+     * KEYS: reconciling, journal, counts, 小时桶...;
+     * ARGV: 校准令牌, 每个计数键依次为 [过期时间戳（秒），只有小时桶有], 字段数, (字段, 值)...
+     * 返回 -1 表示校准已超时，未做修改
+     */
+    private static final RedisScript<Long> OVERWRITE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) ~= ARGV[1] then return -1 end\n"
+                    + "local targets = {}\n"
+                    + "local expireAt = {}\n"
+                    + "local pos = 2\n"
+                    + "for i = 3, #KEYS do\n"
+                    + "  targets[KEYS[i]] = true\n"
+                    + "  redis.call('DEL', KEYS[i])\n"
+                    + "  if i >= 4 then\n"
+                    + "    expireAt[i] = ARGV[pos]\n"
+                    + "    pos = pos + 1\n"
+                    + "  end\n"
+                    + "  local n = tonumber(ARGV[pos])\n"
+                    + "  pos = pos + 1\n"
+                    + "  for j = 1, n do\n"
+                    + "    redis.call('HSET', KEYS[i], ARGV[pos], ARGV[pos + 1])\n"
+                    + "    pos = pos + 2\n"
+                    + "  end\n"
+                    + "end\n"
+                    + "local journal = redis.call('HGETALL', KEYS[2])\n"
+                    + "for j = 1, #journal, 2 do\n"
+                    + "  local sep = string.find(journal[j], '|', 1, true)\n"
+                    + "  local key = string.sub(journal[j], 1, sep - 1)\n"
+                    + "  if targets[key] then\n"
+                    + "    redis.call('HINCRBY', key, string.sub(journal[j], sep + 1), journal[j + 1])\n"
+                    + "  end\n"
+                    + "end\n"
+                    + "for i = 4, #KEYS do\n"
+                    + "  if redis.call('EXISTS', KEYS[i]) == 1 then redis.call('EXPIREAT', KEYS[i], expireAt[i]) end\n"
+                    + "end\n"
+                    + "redis.call('DEL', KEYS[1], KEYS[2])\n"
+                    + "return #journal / 2",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final EventRepository eventRepository;
+
+    @Value("${event.statistics.local-ttl-ms:1000}")
+    private long localTtlMs;
+
+    @Value("${event.statistics.bucket-retention-hours:168}")
+    private int bucketRetentionHours;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * 一次写入对计数的增减，同一事件先 remove 修改前的状态再 add 修改后的状态
+     */
+    public static final class Delta {
+        private final Map<String, Long> counts = new HashMap<>();
+        private final Map<String, Map<String, Long>> hours = new HashMap<>();
+
+        public Delta add(Event event) {
+            return apply(event, 1);
+        }
+
+        public Delta remove(Event event) {
+            return apply(event, -1);
+        }
+
+        private Delta apply(Event event, long sign) {
+            counts.merge(countField(event.getStatus(), event.getLevel()), sign, Long::sum);
+            if (event.getStartTime() != null) {
+                hours.computeIfAbsent(hourKey(event.getStartTime()), k -> new HashMap<>())
+                        .merge(String.valueOf(event.getLevel()), sign, Long::sum);
+            }
+            return this;
+        }
+    }
+
+    /**
+     * 本地快照：状态:级别 计数和读取时间
+     */
+    private static final class Snapshot {
+        private final Map<String, Long> counts;
+        private final long loadedAt;
+
+        private Snapshot(Map<String, Long> counts, long loadedAt) {
+            this.counts = counts;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            log.warn("事件计数初始化失败，等待下次校准", e);
+        }
+    }
+
+    /**
+     * 用数据库的分组统计覆盖Redis中的计数，修正增量更新丢失造成的偏差；
+     * 同一时间只有一个实例校准，其他实例跳过本次
+     */
+    @Scheduled(fixedDelayString = "${event.statistics.reconcile-interval:300000}",
+            initialDelayString = "${event.statistics.reconcile-interval:300000}")
+    public void reconcile() {
+        String token = UUID.randomUUID().toString();
+        if (!Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(RECONCILING_KEY, token, RECONCILE_TIMEOUT))) {
+            log.info("其他实例正在校准事件计数，跳过本次");
+            return;
+        }
+        // 上次校准中断时留下的增量已经计入计数
+        redisTemplate.delete(JOURNAL_KEY);
+
+        Map<String, String> counts = new HashMap<>();
+        Map<String, Map<String, String>> hours = new HashMap<>();
+        try {
+            for (Object[] row : eventRepository.countGroupByStatusAndLevel()) {
+                counts.put(countField((EventStatus) row[0], (EventLevel) row[1]), String.valueOf(row[2]));
+            }
+
+            LocalDateTime since = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(bucketRetentionHours - 1L);
+            for (LocalDateTime hour = since; !hour.isAfter(LocalDateTime.now()); hour = hour.plusHours(1)) {
+                hours.put(hourKey(hour), new HashMap<>());
+            }
+            for (Object[] row : eventRepository.countHourlyByLevel(since)) {
+                hours.computeIfAbsent(HOUR_PREFIX + row[0], k -> new HashMap<>())
+                        .put(String.valueOf(row[1]), String.valueOf(row[2]));
+            }
+        } catch (RuntimeException e) {
+            if (token.equals(redisTemplate.opsForValue().get(RECONCILING_KEY))) {
+                redisTemplate.delete(Arrays.asList(RECONCILING_KEY, JOURNAL_KEY));
+            }
+            throw e;
+        }
+
+        List<String> keys = new ArrayList<>(Arrays.asList(RECONCILING_KEY, JOURNAL_KEY, COUNTS_KEY));
+        List<String> args = new ArrayList<>(Collections.singletonList(token));
+        appendFields(args, counts);
+        for (Map.Entry<String, Map<String, String>> hour : hours.entrySet()) {
+            keys.add(hour.getKey());
+            args.add(String.valueOf(bucketExpireAt(hour.getKey())));
+            appendFields(args, hour.getValue());
+        }
+        Long replayed = redisTemplate.execute(OVERWRITE_SCRIPT, keys, args.toArray());
+        snapshot = null;
+        if (replayed == null || replayed < 0) {
+            log.warn("事件计数校准超过 {}，放弃本次覆盖", RECONCILE_TIMEOUT);
+            return;
+        }
+        log.info("事件计数已校准: {} 个状态/级别组合, {} 个小时桶, 补回 {} 个校准期间的增量",
+                counts.size(), hours.size(), replayed);
+    }
+
+    private static void appendFields(List<String> args, Map<String, String> fields) {
+        args.add(String.valueOf(fields.size()));
+        fields.forEach((field, value) -> {
+            args.add(field);
+            args.add(value);
+        });
+    }
+
+    /**
+     * 小时桶的过期时间戳（秒）：桶所在小时之后 bucket-retention-hours 小时，与查询返回的范围一致
+     */
+    private long bucketExpireAt(String hourKey) {
+        LocalDateTime hour = LocalDateTime.parse(hourKey.substring(HOUR_PREFIX.length()), HOUR_FORMAT);
+        return hour.plusHours(bucketRetentionHours).atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+
+    /**
+     * 事务提交后把增减写入Redis，失败时只记录日志，由定时校准修正
+     */
+    public void applyAfterCommit(Delta delta) {
+        AfterCommit.run(() -> {
+            try {
+                apply(delta);
+            } catch (RuntimeException e) {
+                log.warn("事件计数更新失败，等待下次校准", e);
+            }
+            snapshot = null;
+        });
+    }
+
+    /**
+     * 按 状态:级别 的计数
+     */
+    public Map<String, Long> counts() {
+        Snapshot current = snapshot;
+        if (current != null && System.currentTimeMillis() - current.loadedAt < localTtlMs) {
+            return current.counts;
+        }
+        Map<String, Long> counts = new HashMap<>();
+        try {
+            redisTemplate.<String, String>opsForHash().entries(COUNTS_KEY)
+                    .forEach((field, value) -> counts.put(field, Long.valueOf(value)));
+        } catch (RuntimeException e) {
+            log.warn("读取事件计数失败，回退到数据库分组统计", e);
+            counts.clear();
+            for (Object[] row : eventRepository.countGroupByStatusAndLevel()) {
+                counts.put(countField((EventStatus) row[0], (EventLevel) row[1]), (Long) row[2]);
+            }
+        }
+        snapshot = new Snapshot(counts, System.currentTimeMillis());
+        return counts;
+    }
+
+    public Map<EventStatus, Long> countsByStatus() {
+        Map<EventStatus, Long> result = new EnumMap<>(EventStatus.class);
+        for (EventStatus status : EventStatus.values()) {
+            result.put(status, 0L);
+        }
+        counts().forEach((field, count) -> {
+            EventStatus status = parse(EventStatus.class, field.substring(0, field.indexOf(':')));
+            if (status != null) {
+                result.merge(status, count, Long::sum);
+            }
+        });
+        return result;
+    }
+
+    public Map<EventLevel, Long> countsByLevel() {
+        Map<EventLevel, Long> result = new EnumMap<>(EventLevel.class);
+        for (EventLevel level : EventLevel.values()) {
+            result.put(level, 0L);
+        }
+        counts().forEach((field, count) -> {
+            EventLevel level = parse(EventLevel.class, field.substring(field.indexOf(':') + 1));
+            if (level != null) {
+                result.merge(level, count, Long::sum);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 按开始时间所在小时统计事件数，只返回保留期内到当前小时为止的部分，最多 bucket-retention-hours 个桶
+     *
+     * @throws IllegalArgumentException startTime 晚于 endTime
+     */
+    public List<EventCountBucketDTO> hourlyCounts(LocalDateTime startTime, LocalDateTime endTime) {
+        if (startTime.isAfter(endTime)) {
+            throw new IllegalArgumentException("开始时间不能晚于结束时间: " + startTime + " > " + endTime);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime earliest = now.truncatedTo(ChronoUnit.HOURS).minusHours(bucketRetentionHours - 1L);
+        LocalDateTime first = startTime.truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime last = endTime.isAfter(now) ? now : endTime;
+        List<LocalDateTime> hours = new ArrayList<>();
+        for (LocalDateTime hour = first.isBefore(earliest) ? earliest : first; !hour.isAfter(last);
+             hour = hour.plusHours(1)) {
+            hours.add(hour);
+        }
+        if (hours.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Object> entries = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                for (LocalDateTime hour : hours) {
+                    operations.opsForHash().entries(hourKey(hour));
+                }
+                return null;
+            }
+        });
+
+        List<EventCountBucketDTO> buckets = new ArrayList<>(hours.size());
+        for (int i = 0; i < hours.size(); i++) {
+            Map<EventLevel, Long> levels = new EnumMap<>(EventLevel.class);
+            long total = 0;
+            @SuppressWarnings("unchecked")
+            Map<Object, Object> entry = (Map<Object, Object>) entries.get(i);
+            for (Map.Entry<Object, Object> field : entry.entrySet()) {
+                long count = Long.parseLong(String.valueOf(field.getValue()));
+                EventLevel level = parse(EventLevel.class, String.valueOf(field.getKey()));
+                if (level != null && count != 0) {
+                    levels.put(level, count);
+                }
+                total += count;
+            }
+            buckets.add(new EventCountBucketDTO(hours.get(i), total, levels));
+        }
+        return buckets;
+    }
+
+    private void apply(Delta delta) {
+        List<String> keys = new ArrayList<>(Arrays.asList(RECONCILING_KEY, JOURNAL_KEY, COUNTS_KEY));
+        List<String> expireAt = new ArrayList<>();
+        List<String> changes = new ArrayList<>();
+        delta.counts.forEach((field, change) -> {
+            if (change != 0) {
+                changes.addAll(Arrays.asList("3", field, String.valueOf(change)));
+            }
+        });
+        delta.hours.forEach((key, levels) -> {
+            String index = String.valueOf(keys.size() + 1);
+            boolean changed = false;
+            for (Map.Entry<String, Long> level : levels.entrySet()) {
+                if (level.getValue() != 0) {
+                    changes.addAll(Arrays.asList(index, level.getKey(), String.valueOf(level.getValue())));
+                    changed = true;
+                }
+            }
+            if (changed) {
+                keys.add(key);
+                expireAt.add(String.valueOf(bucketExpireAt(key)));
+            }
+        });
+        if (!changes.isEmpty()) {
+            List<String> args = new ArrayList<>(expireAt);
+            args.addAll(changes);
+            redisTemplate.execute(APPLY_SCRIPT, keys, args.toArray());
+        }
+    }
+
+    private static String countField(EventStatus status, EventLevel level) {
+        return status + ":" + level;
+    }
+
+    private static String hourKey(LocalDateTime time) {
+        return HOUR_PREFIX + HOUR_FORMAT.format(time);
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String name) {
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.smartflow.traffic.event.service;
 
+import com.smartflow.traffic.event.dto.EventCountBucketDTO;
 import com.smartflow.traffic.event.dto.EventDTO;
 import com.smartflow.traffic.event.entity.EventStatus;
 import com.smartflow.traffic.event.entity.EventLevel;
@@ -8,6 +9,7 @@ import org.springframework.data.domain.Pageable;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 事件服务接口
@@ -65,9 +67,14 @@ public interface EventService {
     List<EventDTO> getEventsByCameraId(Long cameraId);
 
     /**
-     * 查询活跃事件（未关闭）
+     * 查询活跃事件（未关闭），按开始时间倒序
+     *
+     * @param level     为空时不限级别
+     * @param cameraId  为空时不限摄像头
+     * @param startTime 开始时间下限，为空时不限
+     * @param endTime   开始时间上限，为空时不限
      */
-    List<EventDTO> getActiveEvents();
+    List<EventDTO> getActiveEvents(EventLevel level, Long cameraId, LocalDateTime startTime, LocalDateTime endTime);
 
     /**
      * 查询指定时间范围内的事件
@@ -76,24 +83,35 @@ public interface EventService {
 
     /**
      * 自动关闭超时事件
+     *
+     * @return 被关闭的事件ID
      */
-    void autoCloseTimeoutEvents();
+    List<Long> autoCloseTimeoutEvents();
 
     /**
      * 获取事件统计信息
      */
     EventStatistics getEventStatistics();
 
+    /**
+     * 按开始时间所在小时统计事件数量，只返回保留期内到当前时间为止的小时，startTime 晚于 endTime 时返回400
+     */
+    List<EventCountBucketDTO> getHourlyEventCounts(LocalDateTime startTime, LocalDateTime endTime);
+
     /**
      * 事件统计信息内部类
      */
     class EventStatistics {
         private long totalEvents;
         private long pendingEvents;
+        private long confirmedEvents;
         private long inProgressEvents;
         private long resolvedEvents;
         private long closedEvents;
         private long falseAlarmEvents;
+        private long cancelledEvents;
+        private Map<EventStatus, Long> statusCounts;
+        private Map<EventLevel, Long> levelCounts;
 
         // Getters and Setters
         public long getTotalEvents() { return totalEvents; }
@@ -102,6 +120,9 @@ public interface EventService {
         public long getPendingEvents() { return pendingEvents; }
         public void setPendingEvents(long pendingEvents) { this.pendingEvents = pendingEvents; }
 
+        public long getConfirmedEvents() { return confirmedEvents; }
+        public void setConfirmedEvents(long confirmedEvents) { this.confirmedEvents = confirmedEvents; }
+
         public long getInProgressEvents() { return inProgressEvents; }
         public void setInProgressEvents(long inProgressEvents) { this.inProgressEvents = inProgressEvents; }
 
@@ -113,6 +134,15 @@ public interface EventService {
 
         public long getFalseAlarmEvents() { return falseAlarmEvents; }
         public void setFalseAlarmEvents(long falseAlarmEvents) { this.falseAlarmEvents = falseAlarmEvents; }
+
+        public long getCancelledEvents() { return cancelledEvents; }
+        public void setCancelledEvents(long cancelledEvents) { this.cancelledEvents = cancelledEvents; }
+
+        public Map<EventStatus, Long> getStatusCounts() { return statusCounts; }
+        public void setStatusCounts(Map<EventStatus, Long> statusCounts) { this.statusCounts = statusCounts; }
+
+        public Map<EventLevel, Long> getLevelCounts() { return levelCounts; }
+        public void setLevelCounts(Map<EventLevel, Long> levelCounts) { this.levelCounts = levelCounts; }
     }
 }
 
@@ -0,0 +1,72 @@
+package com.smartflow.traffic.event.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartflow.traffic.event.dto.EventStatusChangeDTO;
+import com.smartflow.traffic.event.entity.Event;
+import com.smartflow.traffic.event.entity.EventStatus;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 事件状态变更消息发布
+ * 消息以事件ID为键发送到 event.status-changes.topic，同一事件的变更按顺序进入同一分区；
+ * 在事务提交后发送，提交后进程退出等情况下消息可能丢失
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EventStatusPublisher {
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${event.status-changes.topic:event-status-changes}")
+    private String topic;
+
+    /**
+     * 由变更前的事件生成状态变更消息
+     */
+    public static EventStatusChangeDTO change(Event before, EventStatus status, String handler,
+                                              LocalDateTime changedAt) {
+        return EventStatusChangeDTO.builder()
+                .eventId(before.getId())
+                .detectionId(before.getDetectionId())
+                .cameraId(before.getCameraId())
+                .level(before.getLevel())
+                .previousStatus(before.getStatus())
+                .status(status)
+                .handler(handler)
+                .changedAt(changedAt)
+                .build();
+    }
+
+    /**
+     * 事务提交后发送状态变更消息
+     */
+    public void publishAfterCommit(List<EventStatusChangeDTO> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        AfterCommit.run(() -> changes.forEach(this::send));
+    }
+
+    private void send(EventStatusChangeDTO change) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(change);
+        } catch (JsonProcessingException e) {
+            log.error("事件状态变更消息序列化失败: {}", change, e);
+            return;
+        }
+        kafkaTemplate.send(topic, String.valueOf(change.getEventId()), payload)
+                .addCallback(result -> { }, e -> log.warn("事件状态变更消息发送失败: ID={}, {} -> {}",
+                        change.getEventId(), change.getPreviousStatus(), change.getStatus(), e));
+    }
+}
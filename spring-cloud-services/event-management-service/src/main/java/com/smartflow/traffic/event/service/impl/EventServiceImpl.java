@@ -1,25 +1,42 @@
 package com.smartflow.traffic.event.service.impl;
 
+import com.smartflow.traffic.event.dto.EventCountBucketDTO;
 import com.smartflow.traffic.event.dto.EventDTO;
+import com.smartflow.traffic.event.dto.EventStatusChangeDTO;
 import com.smartflow.traffic.event.entity.Event;
 import com.smartflow.traffic.event.entity.EventStatus;
 import com.smartflow.traffic.event.entity.EventLevel;
 import com.smartflow.traffic.event.repository.EventRepository;
+import com.smartflow.traffic.event.service.ActiveEventIndex;
+import com.smartflow.traffic.event.service.EventCacheEvictor;
+import com.smartflow.traffic.event.service.EventCounters;
+import com.smartflow.traffic.event.service.EventMapper;
 import com.smartflow.traffic.event.service.EventService;
+import com.smartflow.traffic.event.service.EventStatusPublisher;
 import com.smartflow.traffic.event.exception.EventNotFoundException;
 import com.smartflow.traffic.event.exception.InvalidStatusTransitionException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -33,9 +50,22 @@ public class EventServiceImpl implements EventService {
 
     private final EventRepository eventRepository;
     private final EventMapper eventMapper;
+    private final EventCacheEvictor eventCacheEvictor;
+    private final ActiveEventIndex activeEventIndex;
+    private final EventCounters eventCounters;
+    private final EventStatusPublisher eventStatusPublisher;
+    private final PlatformTransactionManager transactionManager;
+
+    private static final String AUTO_CLOSE_HANDLER = "系统";
+    private static final String AUTO_CLOSE_NOTES = "自动关闭：超时未确认";
+
+    @Value("${event.status.auto-close.delay:3600000}")
+    private long autoCloseDelay;
+
+    @Value("${event.status.auto-close.batch-size:500}")
+    private int autoCloseBatchSize;
 
     @Override
-    @CacheEvict(value = "events", allEntries = true)
     public EventDTO createEvent(EventDTO eventDTO) {
         log.info("创建事件: {}", eventDTO.getTitle());
         
@@ -45,6 +75,9 @@ public class EventServiceImpl implements EventService {
         event.setUpdatedAt(LocalDateTime.now());
         
         Event savedEvent = eventRepository.save(event);
+        eventCacheEvictor.evictAfterCommit(EventCacheEvictor.keysOf(savedEvent));
+        activeEventIndex.updateAfterCommit(savedEvent);
+        eventCounters.applyAfterCommit(new EventCounters.Delta().add(savedEvent));
         log.info("事件创建成功，ID: {}", savedEvent.getId());
         
         return eventMapper.toDTO(savedEvent);
@@ -73,12 +106,13 @@ public class EventServiceImpl implements EventService {
     }
 
     @Override
-    @CacheEvict(value = "events", allEntries = true)
     public EventDTO updateEvent(Long id, EventDTO eventDTO) {
         log.info("更新事件: {}", id);
         
         Event existingEvent = eventRepository.findById(id)
                 .orElseThrow(() -> new EventNotFoundException("事件不存在，ID: " + id));
+        Set<Object> cacheKeys = EventCacheEvictor.keysOf(existingEvent);
+        EventCounters.Delta delta = new EventCounters.Delta().remove(existingEvent);
         
         // 更新字段
         existingEvent.setEventType(eventDTO.getEventType());
@@ -95,13 +129,16 @@ public class EventServiceImpl implements EventService {
         existingEvent.setUpdatedAt(LocalDateTime.now());
         
         Event savedEvent = eventRepository.save(existingEvent);
+        EventCacheEvictor.addKeys(cacheKeys, savedEvent);
+        eventCacheEvictor.evictAfterCommit(cacheKeys);
+        activeEventIndex.updateAfterCommit(savedEvent);
+        eventCounters.applyAfterCommit(delta.add(savedEvent));
         log.info("事件更新成功，ID: {}", savedEvent.getId());
         
         return eventMapper.toDTO(savedEvent);
     }
 
     @Override
-    @CacheEvict(value = "events", allEntries = true)
     public EventDTO updateEventStatus(Long id, EventStatus status, String handler, String notes) {
         log.info("更新事件状态: ID={}, 状态={}, 处理人={}", id, status, handler);
         
@@ -113,6 +150,9 @@ public class EventServiceImpl implements EventService {
             throw new InvalidStatusTransitionException(
                 String.format("无效的状态转换: %s -> %s", event.getStatus(), status));
         }
+        Set<Object> cacheKeys = EventCacheEvictor.keysOf(event);
+        EventCounters.Delta delta = new EventCounters.Delta().remove(event);
+        EventStatusChangeDTO change = EventStatusPublisher.change(event, status, handler, LocalDateTime.now());
         
         // 更新状态
         event.setStatus(status);
@@ -126,21 +166,27 @@ public class EventServiceImpl implements EventService {
         }
         
         Event savedEvent = eventRepository.save(event);
+        EventCacheEvictor.addKeys(cacheKeys, savedEvent);
+        eventCacheEvictor.evictAfterCommit(cacheKeys);
+        activeEventIndex.updateAfterCommit(savedEvent);
+        eventCounters.applyAfterCommit(delta.add(savedEvent));
+        eventStatusPublisher.publishAfterCommit(Collections.singletonList(change));
         log.info("事件状态更新成功，ID: {}, 新状态: {}", savedEvent.getId(), savedEvent.getStatus());
         
         return eventMapper.toDTO(savedEvent);
     }
 
     @Override
-    @CacheEvict(value = "events", allEntries = true)
     public void deleteEvent(Long id) {
         log.info("删除事件: {}", id);
         
-        if (!eventRepository.existsById(id)) {
-            throw new EventNotFoundException("事件不存在，ID: " + id);
-        }
+        Event event = eventRepository.findById(id)
+                .orElseThrow(() -> new EventNotFoundException("事件不存在，ID: " + id));
         
-        eventRepository.deleteById(id);
+        eventRepository.delete(event);
+        eventCacheEvictor.evictAfterCommit(EventCacheEvictor.keysOf(event));
+        activeEventIndex.removeAfterCommit(id);
+        eventCounters.applyAfterCommit(new EventCounters.Delta().remove(event));
         log.info("事件删除成功，ID: {}", id);
     }
 
@@ -185,12 +231,24 @@ public class EventServiceImpl implements EventService {
 
     @Override
     @Transactional(readOnly = true)
-    @Cacheable(value = "events", key = "'active'")
-    public List<EventDTO> getActiveEvents() {
-        log.debug("查询活跃事件");
+    public List<EventDTO> getActiveEvents(EventLevel level, Long cameraId, LocalDateTime startTime,
+                                          LocalDateTime endTime) {
+        log.debug("查询活跃事件: level={}, cameraId={}, {} - {}", level, cameraId, startTime, endTime);
         
+        try {
+            return activeEventIndex.find(level, cameraId, startTime, endTime);
+        } catch (RuntimeException e) {
+            log.warn("活跃事件索引不可用，回退到数据库查询", e);
+        }
         List<Event> events = eventRepository.findActiveEvents();
-        return events.stream().map(eventMapper::toDTO).collect(Collectors.toList());
+        return events.stream()
+                .filter(event -> level == null || event.getLevel() == level)
+                .filter(event -> cameraId == null || cameraId.equals(event.getCameraId()))
+                .filter(event -> startTime == null || !event.getStartTime().isBefore(startTime))
+                .filter(event -> endTime == null || !event.getStartTime().isAfter(endTime))
+                .sorted(Comparator.comparing(Event::getStartTime).reversed())
+                .map(eventMapper::toDTO)
+                .collect(Collectors.toList());
     }
 
     @Override
@@ -204,42 +262,90 @@ public class EventServiceImpl implements EventService {
 
     @Override
     @Scheduled(fixedDelay = 300000) // 每5分钟执行一次
-    @CacheEvict(value = "events", allEntries = true)
-    public void autoCloseTimeoutEvents() {
-        log.info("开始自动关闭超时事件");
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<Long> autoCloseTimeoutEvents() {
+        LocalDateTime thresholdTime = LocalDateTime.now().minus(autoCloseDelay, ChronoUnit.MILLIS);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        List<Long> closedIds = new ArrayList<>();
         
-        LocalDateTime thresholdTime = LocalDateTime.now().minusHours(1); // 1小时前
-        List<Event> timeoutEvents = eventRepository.findEventsForAutoClose(thresholdTime);
+        // 分批在独立事务中关闭，每批锁定的行数有上限
+        while (true) {
+            List<Long> chunk = transactionTemplate.execute(status -> closeTimeoutChunk(thresholdTime));
+            if (chunk == null || chunk.isEmpty()) {
+                break;
+            }
+            closedIds.addAll(chunk);
+        }
         
-        for (Event event : timeoutEvents) {
-            event.setStatus(EventStatus.FALSE_ALARM);
-            event.setHandler("系统");
-            event.setHandlerNotes("自动关闭：超时未确认");
-            event.setUpdatedAt(LocalDateTime.now());
-            event.setEndTime(LocalDateTime.now());
-            
-            eventRepository.save(event);
-            log.info("自动关闭超时事件: ID={}, 标题={}", event.getId(), event.getTitle());
+        if (!closedIds.isEmpty()) {
+            log.info("自动关闭超时事件完成，处理数量: {}", closedIds.size());
+        }
+        return closedIds;
+    }
+
+    /**
+     * 锁定一批超时的待确认事件，用一条UPDATE改为误报，并在提交后定向失效缓存、更新活跃索引、计数和发送状态变更消息
+     */
+    private List<Long> closeTimeoutChunk(LocalDateTime thresholdTime) {
+        List<Event> events = eventRepository.lockEventsForAutoClose(thresholdTime, autoCloseBatchSize);
+        if (events.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> ids = events.stream().map(Event::getId).collect(Collectors.toList());
+        LocalDateTime now = LocalDateTime.now();
+        int updated = eventRepository.transitionStatus(ids, EventStatus.PENDING_CONFIRMATION, EventStatus.FALSE_ALARM,
+                AUTO_CLOSE_HANDLER, AUTO_CLOSE_NOTES, now);
+        if (updated != ids.size()) {
+            // 行已锁定，状态不会被并发修改
+            throw new IllegalStateException(String.format("自动关闭更新行数不符: 锁定 %d, 更新 %d", ids.size(), updated));
         }
         
-        log.info("自动关闭超时事件完成，处理数量: {}", timeoutEvents.size());
+        Set<Object> cacheKeys = new LinkedHashSet<>();
+        EventCounters.Delta delta = new EventCounters.Delta();
+        List<EventStatusChangeDTO> changes = new ArrayList<>(events.size());
+        for (Event event : events) {
+            EventCacheEvictor.addKeys(cacheKeys, event);
+            delta.remove(event);
+            changes.add(EventStatusPublisher.change(event, EventStatus.FALSE_ALARM, AUTO_CLOSE_HANDLER, now));
+            event.setStatus(EventStatus.FALSE_ALARM);
+            EventCacheEvictor.addKeys(cacheKeys, event);
+            delta.add(event);
+        }
+        eventCacheEvictor.evictAfterCommit(cacheKeys);
+        activeEventIndex.removeAllAfterCommit(ids, now);
+        eventCounters.applyAfterCommit(delta);
+        eventStatusPublisher.publishAfterCommit(changes);
+        log.debug("自动关闭超时事件 {} 个: {}", ids.size(), ids);
+        return ids;
     }
 
     @Override
     @Transactional(readOnly = true)
-    @Cacheable(value = "statistics", key = "'event_stats'")
     public EventStatistics getEventStatistics() {
         log.debug("获取事件统计信息");
         
+        Map<EventStatus, Long> statusCounts = eventCounters.countsByStatus();
+        Map<EventLevel, Long> levelCounts = eventCounters.countsByLevel();
+        
         EventStatistics statistics = new EventStatistics();
-        statistics.setTotalEvents(eventRepository.count());
-        statistics.setPendingEvents(eventRepository.countByStatus(EventStatus.PENDING_CONFIRMATION));
-        statistics.setInProgressEvents(eventRepository.countByStatus(EventStatus.IN_PROGRESS));
-        statistics.setResolvedEvents(eventRepository.countByStatus(EventStatus.RESOLVED));
-        statistics.setClosedEvents(eventRepository.countByStatus(EventStatus.CLOSED));
-        statistics.setFalseAlarmEvents(eventRepository.countByStatus(EventStatus.FALSE_ALARM));
+        statistics.setTotalEvents(statusCounts.values().stream().mapToLong(Long::longValue).sum());
+        statistics.setPendingEvents(statusCounts.get(EventStatus.PENDING_CONFIRMATION));
+        statistics.setConfirmedEvents(statusCounts.get(EventStatus.CONFIRMED));
+        statistics.setInProgressEvents(statusCounts.get(EventStatus.IN_PROGRESS));
+        statistics.setResolvedEvents(statusCounts.get(EventStatus.RESOLVED));
+        statistics.setClosedEvents(statusCounts.get(EventStatus.CLOSED));
+        statistics.setFalseAlarmEvents(statusCounts.get(EventStatus.FALSE_ALARM));
+        statistics.setCancelledEvents(statusCounts.get(EventStatus.CANCELLED));
+        statistics.setStatusCounts(statusCounts);
+        statistics.setLevelCounts(levelCounts);
         
         return statistics;
     }
-}
 
+    @Override
+    public List<EventCountBucketDTO> getHourlyEventCounts(LocalDateTime startTime, LocalDateTime endTime) {
+        log.debug("按小时统计事件数量: {} - {}", startTime, endTime);
+        
+        return eventCounters.hourlyCounts(startTime, endTime);
+    }
+}
@@ -7,7 +7,8 @@ USE smartflow_ai;
 
 -- 交通数据表
 CREATE TABLE IF NOT EXISTS traffic_data (
-    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    id BIGINT AUTO_INCREMENT,
+    camera_id BIGINT,
     date_time DATETIME NOT NULL,
     pedestrian_count INT DEFAULT 0,
     car_count INT DEFAULT 0,
@@ -25,39 +26,75 @@ CREATE TABLE IF NOT EXISTS traffic_data (
     congestion_level INT DEFAULT 0,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    INDEX idx_camera_date_time (camera_id, date_time),
     INDEX idx_date_time (date_time),
+    PRIMARY KEY (id, date_time),
     INDEX idx_congestion_level (congestion_level)
-) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+-- 按天分区，日分区由服务的 TrafficPartitionManager 创建和清理
+PARTITION BY RANGE (TO_DAYS(date_time)) (
+    PARTITION pmax VALUES LESS THAN MAXVALUE
+);
 
 -- 事故检测表
 CREATE TABLE IF NOT EXISTS accident_detection (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    camera_id BIGINT,
     date_time DATETIME NOT NULL,
-    image_data LONGBLOB,
+    image_ref CHAR(64),
     involved_vehicles VARCHAR(255),
     confidence_score DECIMAL(3,2) NOT NULL,
-    severity VARCHAR(50) DEFAULT 'Medium',
-    status VARCHAR(50) DEFAULT 'Pending',
+    severity VARCHAR(50) DEFAULT 'MEDIUM',
+    status VARCHAR(50) DEFAULT 'PENDING',
     location VARCHAR(255),
     description TEXT,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    INDEX idx_camera_date_time (camera_id, date_time),
     INDEX idx_date_time (date_time),
     INDEX idx_status (status),
     INDEX idx_confidence_score (confidence_score)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
+-- 交通数据汇总表（按摄像头的分钟/小时/天汇总桶，granularity: m/h/d；交通量、车速各自只计非空值）
+CREATE TABLE IF NOT EXISTS traffic_rollup (
+    granularity CHAR(1) NOT NULL,
+    camera_id BIGINT NOT NULL,
+    bucket_start DATETIME NOT NULL,
+    sample_count BIGINT NOT NULL,
+    volume_count BIGINT NOT NULL,
+    volume_sum DOUBLE NOT NULL,
+    volume_min DOUBLE NULL,
+    volume_max DOUBLE NULL,
+    car_speed_count BIGINT NOT NULL,
+    car_speed_sum DOUBLE NOT NULL,
+    car_speed_min DOUBLE NULL,
+    car_speed_max DOUBLE NULL,
+    PRIMARY KEY (granularity, bucket_start, camera_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Kafka发件箱（和业务数据同一事务写入，由发送线程批量发送后删除；schema_id 0 表示JSON）
+CREATE TABLE IF NOT EXISTS detection_outbox (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    topic VARCHAR(100) NOT NULL,
+    record_key VARCHAR(100),
+    schema_id INT NOT NULL,
+    payload MEDIUMBLOB NOT NULL,
+    created_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    PRIMARY KEY (id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
 -- 插入一些示例数据
-INSERT INTO traffic_data (date_time, pedestrian_count, car_count, bicycle_count, bus_count, motorcycle_count, truck_count, 
+INSERT INTO traffic_data (camera_id, date_time, pedestrian_count, car_count, bicycle_count, bus_count, motorcycle_count, truck_count, 
                          pedestrian_speed, car_speed, bicycle_speed, bus_speed, motorcycle_speed, truck_speed, 
                          volume, congestion_level) VALUES
-(NOW() - INTERVAL 1 HOUR, 5, 25, 8, 3, 12, 2, 3.5, 45.2, 15.8, 35.6, 38.9, 42.1, 1250.5, 1),
-(NOW() - INTERVAL 30 MINUTE, 3, 18, 6, 2, 9, 1, 4.2, 52.1, 18.3, 38.9, 42.5, 45.8, 980.3, 0),
-(NOW() - INTERVAL 15 MINUTE, 7, 32, 12, 4, 15, 3, 3.8, 38.7, 12.5, 32.1, 35.2, 38.9, 1450.8, 2);
+(1, NOW() - INTERVAL 1 HOUR, 5, 25, 8, 3, 12, 2, 3.5, 45.2, 15.8, 35.6, 38.9, 42.1, 1250.5, 1),
+(1, NOW() - INTERVAL 30 MINUTE, 3, 18, 6, 2, 9, 1, 4.2, 52.1, 18.3, 38.9, 42.5, 45.8, 980.3, 0),
+(1, NOW() - INTERVAL 15 MINUTE, 7, 32, 12, 4, 15, 3, 3.8, 38.7, 12.5, 32.1, 35.2, 38.9, 1450.8, 2);
 
 -- 插入一些示例事故数据
-INSERT INTO accident_detection (date_time, involved_vehicles, confidence_score, severity, status, location, description) VALUES
-(NOW() - INTERVAL 2 HOUR, 'Car, Car', 0.92, 'High', 'Resolved', 'Intersection A', 'Two vehicles collision at main intersection'),
-(NOW() - INTERVAL 1 HOUR, 'Car, Bicycle', 0.87, 'Medium', 'Pending', 'Street B', 'Vehicle and bicycle accident'),
-(NOW() - INTERVAL 30 MINUTE, 'Bike, Bike', 0.89, 'Low', 'Investigating', 'Park Road', 'Two bicycles collision');
+INSERT INTO accident_detection (camera_id, date_time, involved_vehicles, confidence_score, severity, status, location, description) VALUES
+(1, NOW() - INTERVAL 2 HOUR, 'Car, Car', 0.92, 'HIGH', 'RESOLVED', 'Intersection A', 'Two vehicles collision at main intersection'),
+(1, NOW() - INTERVAL 1 HOUR, 'Car, Bicycle', 0.87, 'MEDIUM', 'PENDING', 'Street B', 'Vehicle and bicycle accident'),
+(1, NOW() - INTERVAL 30 MINUTE, 'Bike, Bike', 0.89, 'LOW', 'INVESTIGATING', 'Park Road', 'Two bicycles collision');
 